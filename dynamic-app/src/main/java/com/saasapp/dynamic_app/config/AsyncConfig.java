@@ -1,7 +1,14 @@
 package com.saasapp.dynamic_app.config;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
 
 /**
  * Async Configuration
@@ -11,6 +18,48 @@ import org.springframework.scheduling.annotation.EnableAsync;
 @Configuration
 @EnableAsync
 public class AsyncConfig {
-    // Configuration class for async support
-}
+    private static final Logger logger = LoggerFactory.getLogger(AsyncConfig.class);
+
+    public static final String EMAIL_EXECUTOR = "emailExecutor";
+
+    @Value("${app.email.executor.concurrency:4}")
+    private int emailConcurrency;
 
+    @Value("${app.email.executor.queue-capacity:500}")
+    private int emailQueueCapacity;
+
+    @Value("${app.email.executor.await-termination-seconds:30}")
+    private int emailAwaitTerminationSeconds;
+
+    @Bean
+    public EmailExecutorMetrics emailExecutorMetrics() {
+        return new EmailExecutorMetrics();
+    }
+
+    /**
+     * Email delivery pool: fixed size matched to what the SMTP server accepts, bounded queue.
+     * When the queue is full the submitting thread sends the email itself, which slows callers
+     * down instead of growing threads or dropping receipts. Queued emails are drained on shutdown.
+     * Not a default candidate, so Boot's applicationTaskExecutor (MVC async, unqualified @Async) stays in place.
+     */
+    @Bean(name = EMAIL_EXECUTOR, defaultCandidate = false)
+    public ThreadPoolTaskExecutor emailExecutor(EmailExecutorMetrics emailExecutorMetrics) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("email-");
+        executor.setCorePoolSize(emailConcurrency);
+        executor.setMaxPoolSize(emailConcurrency);
+        executor.setQueueCapacity(emailQueueCapacity);
+        executor.setTaskDecorator(emailExecutorMetrics::decorate);
+        executor.setRejectedExecutionHandler((task, pool) -> {
+            emailExecutorMetrics.recordCallerRun();
+            logger.warn("Email queue full ({} queued), sending on caller thread {}",
+                    pool.getQueue().size(), Thread.currentThread().getName());
+            new ThreadPoolExecutor.CallerRunsPolicy().rejectedExecution(task, pool);
+        });
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(emailAwaitTerminationSeconds);
+        executor.initialize();
+        emailExecutorMetrics.bind(executor);
+        return executor;
+    }
+}
@@ -12,7 +12,8 @@ public class CorsConfig implements WebMvcConfigurer {
         registry.addMapping("/api/**")
                 .allowedOriginPatterns("http://localhost:[0-9]+", "http://localhost:3000", "http://localhost:3001")
                 .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
-                .allowedHeaders("Content-Type", "Authorization", "X-Requested-With", "Accept")
+                .allowedHeaders("Content-Type", "Authorization", "X-Requested-With", "Accept", "Idempotency-Key")
+                .exposedHeaders("Idempotent-Replayed")
                 .allowCredentials(true)
                 .maxAge(3600);
     }
@@ -0,0 +1,80 @@
+package com.saasapp.dynamic_app.config;
+
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Backlog and latency counters for the email executor.
+ * Queue wait is measured from submission to start; run time covers the SMTP send itself.
+ * Senders catch their own errors, so failed sends are reported through {@link #recordFailure()}.
+ */
+public class EmailExecutorMetrics {
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong callerRuns = new AtomicLong();
+    private final AtomicLong totalQueueWaitNanos = new AtomicLong();
+    private final AtomicLong maxQueueWaitNanos = new AtomicLong();
+    private final AtomicLong totalRunNanos = new AtomicLong();
+    private final AtomicLong maxRunNanos = new AtomicLong();
+
+    private ThreadPoolTaskExecutor executor;
+
+    void bind(ThreadPoolTaskExecutor executor) {
+        this.executor = executor;
+    }
+
+    Runnable decorate(Runnable task) {
+        submitted.incrementAndGet();
+        long submittedAt = System.nanoTime();
+        return () -> {
+            long startedAt = System.nanoTime();
+            record(totalQueueWaitNanos, maxQueueWaitNanos, startedAt - submittedAt);
+            try {
+                task.run();
+            } catch (RuntimeException | Error e) {
+                failed.incrementAndGet();
+                throw e;
+            } finally {
+                completed.incrementAndGet();
+                record(totalRunNanos, maxRunNanos, System.nanoTime() - startedAt);
+            }
+        };
+    }
+
+    public void recordFailure() {
+        failed.incrementAndGet();
+    }
+
+    void recordCallerRun() {
+        callerRuns.incrementAndGet();
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        long finished = completed.get();
+        if (executor != null) {
+            snapshot.put("activeThreads", executor.getActiveCount());
+            snapshot.put("poolSize", executor.getPoolSize());
+            snapshot.put("queueDepth", executor.getQueueSize());
+            snapshot.put("queueCapacity", executor.getQueueCapacity());
+        }
+        snapshot.put("submitted", submitted.get());
+        snapshot.put("completed", completed.get());
+        snapshot.put("failed", failed.get());
+        snapshot.put("callerRuns", callerRuns.get());
+        snapshot.put("avgQueueWaitMs", finished == 0 ? 0 : totalQueueWaitNanos.get() / finished / 1_000_000);
+        snapshot.put("maxQueueWaitMs", maxQueueWaitNanos.get() / 1_000_000);
+        snapshot.put("avgRunMs", finished == 0 ? 0 : totalRunNanos.get() / finished / 1_000_000);
+        snapshot.put("maxRunMs", maxRunNanos.get() / 1_000_000);
+        return snapshot;
+    }
+
+    private static void record(AtomicLong total, AtomicLong max, long nanos) {
+        total.addAndGet(nanos);
+        max.accumulateAndGet(nanos, Math::max);
+    }
+}
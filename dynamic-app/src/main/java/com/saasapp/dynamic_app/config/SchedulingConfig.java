@@ -0,0 +1,15 @@
+package com.saasapp.dynamic_app.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Scheduling Configuration
+ * Enables periodic background jobs using @Scheduled annotation
+ * Used for buffered writes and maintenance tasks
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+    // Configuration class for scheduling support
+}
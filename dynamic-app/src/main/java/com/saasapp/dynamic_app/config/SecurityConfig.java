@@ -57,11 +57,18 @@ public class SecurityConfig {
                         .requestMatchers(HttpMethod.POST, "/api/auth/login").permitAll()
                         .requestMatchers(HttpMethod.POST, "/api/auth/send-otp").permitAll()
                         .requestMatchers(HttpMethod.POST, "/api/auth/refresh-token").permitAll()
+                        .requestMatchers(HttpMethod.POST, "/api/auth/introspect").permitAll()
                         .requestMatchers(HttpMethod.GET, "/health").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/api/payment/metrics").hasRole("ADMIN")
                         .requestMatchers("/api/payment/**").permitAll()
                         .requestMatchers("/api/dynamic/**").permitAll()
                         .requestMatchers("/test").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/api/qr").permitAll()
+                        .requestMatchers("/api/qr/stats").hasRole("ADMIN")
+                        .requestMatchers("/api/qr/**").authenticated()
                         .requestMatchers("/api/auth/**").authenticated()
+                        .requestMatchers("/api/analytics/**").hasRole("ADMIN")
+                        .requestMatchers("/api/statements/**").authenticated()
                         .anyRequest().permitAll())
                 .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
 
@@ -1,7 +1,10 @@
 package com.saasapp.dynamic_app.controller;
 
 import com.saasapp.dynamic_app.dto.*;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.saasapp.dynamic_app.service.AuthService;
+import com.saasapp.dynamic_app.service.TokenIntrospectionService;
 import jakarta.validation.Valid;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
@@ -10,9 +13,17 @@ import lombok.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 
 @RestController
 @RequestMapping("/api/auth")
@@ -25,9 +36,17 @@ import org.springframework.web.bind.annotation.*;
 public class AuthController {
     private static final Logger logger = LoggerFactory.getLogger(AuthController.class);
 
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
     @Autowired
     private AuthService authService;
 
+    @Autowired
+    private TokenIntrospectionService tokenIntrospectionService;
+
+    @Value("${jwt.introspection.api-key:}")
+    private String introspectionApiKey;
+
     @PostMapping("/send-otp")
     public ResponseEntity<?> sendOtp(@Valid @RequestBody SendOtpRequest request) {
         try {
@@ -100,8 +119,8 @@ public class AuthController {
     @PostMapping("/validate")
     public ResponseEntity<?> refreshToken(HttpServletRequest request, HttpServletResponse response) {
         try {
-            logger.info("Token refresh request received");
-            AuthResponse authResponse = authService.refreshToken(request);
+            logger.info("Token validation request received");
+            AuthResponse authResponse = authService.validateToken(request);
 
             // Create and add authToken cookie
             Cookie cookie = new Cookie("authToken", authResponse.getToken());
@@ -125,6 +144,94 @@ public class AuthController {
         }
     }
 
+    @PostMapping("/refresh-token")
+    public ResponseEntity<?> rotateRefreshToken(@Valid @RequestBody RefreshTokenRequest request, HttpServletResponse response) {
+        try {
+            logger.info("Refresh token rotation request received");
+            AuthResponse authResponse = authService.refreshToken(request);
+
+            // Create and add authToken cookie
+            Cookie cookie = new Cookie("authToken", authResponse.getToken());
+            cookie.setHttpOnly(true);
+            cookie.setSecure(true);
+            cookie.setPath("/");
+            cookie.setMaxAge(604800); // 7 days
+            response.addCookie(cookie);
+
+            // Also add Set-Cookie header with SameSite attribute
+            response.addHeader("Set-Cookie", String.format(
+                "authToken=%s; Path=/; Max-Age=604800; HttpOnly; Secure; SameSite=Lax",
+                authResponse.getToken()
+            ));
+
+            return ResponseEntity.ok(authResponse);
+        } catch (RuntimeException e) {
+            logger.warn("Refresh token rotation failed: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(new ErrorResponse(e.getMessage(), "TOKEN_REFRESH_FAILED"));
+        }
+    }
+
+    @PostMapping("/logout")
+    public ResponseEntity<?> logout(@RequestParam(required = false, defaultValue = "false") boolean allSessions,
+                                    HttpServletRequest request, HttpServletResponse response) {
+        try {
+            logger.info("Logout request received, allSessions: {}", allSessions);
+            authService.logout(request, allSessions);
+
+            // Expire the authToken cookie
+            response.addHeader("Set-Cookie", "authToken=; Path=/; Max-Age=0; HttpOnly; Secure; SameSite=Lax");
+
+            return ResponseEntity.ok(new HealthResponse("Logged out successfully"));
+        } catch (RuntimeException e) {
+            logger.warn("Logout failed: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(new ErrorResponse(e.getMessage(), "LOGOUT_FAILED"));
+        }
+    }
+
+    /**
+     * Verify many tokens in one call; results are streamed back as a JSON array in request order
+     * POST /api/auth/introspect
+     */
+    @PostMapping("/introspect")
+    public ResponseEntity<?> introspect(@RequestHeader(value = "X-Introspection-Key", required = false) String apiKey,
+                                        @Valid @RequestBody TokenIntrospectionRequest request) {
+        if (!isIntrospectionKeyValid(apiKey)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(new ErrorResponse("Invalid introspection key", "INTROSPECTION_UNAUTHORIZED"));
+        }
+
+        logger.debug("Introspection request received for {} tokens", request.getTokens().size());
+
+        StreamingResponseBody body = outputStream -> {
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream);
+            generator.writeStartArray();
+            tokenIntrospectionService.introspectAll(request.getTokens(), result -> {
+                try {
+                    objectMapper.writeValue(generator, result);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.writeEndArray();
+            generator.flush();
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    private boolean isIntrospectionKeyValid(String apiKey) {
+        // No configured key means introspection is disabled, not open
+        if (introspectionApiKey == null || introspectionApiKey.isEmpty()) {
+            return false;
+        }
+        return apiKey != null && MessageDigest.isEqual(
+                introspectionApiKey.getBytes(StandardCharsets.UTF_8), apiKey.getBytes(StandardCharsets.UTF_8));
+    }
+
     @GetMapping("/health")
     public ResponseEntity<?> health() {
         return ResponseEntity.ok(new HealthResponse("Auth service is running"));
@@ -0,0 +1,43 @@
+package com.saasapp.dynamic_app.controller;
+
+import com.saasapp.dynamic_app.security.JwtKeyManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the JWT verification keys so other services can validate tokens locally
+ * GET /.well-known/jwks.json
+ */
+@RestController
+public class JwksController {
+
+    @Autowired
+    private JwtKeyManager keyManager;
+
+    @GetMapping("/.well-known/jwks.json")
+    public ResponseEntity<String> jwks(@RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        String etag = keyManager.getJwksEtag();
+        CacheControl cacheControl = CacheControl.maxAge(5, TimeUnit.MINUTES).cachePublic();
+
+        if (etag.equals(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(cacheControl)
+                    .build();
+        }
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(etag)
+                .cacheControl(cacheControl)
+                .body(keyManager.getJwksJson());
+    }
+}
@@ -0,0 +1,65 @@
+package com.saasapp.dynamic_app.controller;
+
+import com.saasapp.dynamic_app.dto.PaymentAnalyticsResponse;
+import com.saasapp.dynamic_app.service.PaymentRollupService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/analytics")
+public class PaymentAnalyticsController {
+    private static final Logger logger = LoggerFactory.getLogger(PaymentAnalyticsController.class);
+
+    @Autowired
+    private PaymentRollupService paymentRollupService;
+
+    /**
+     * Payment totals and counts from the daily rollups
+     * GET /api/analytics/payments?from=2025-01-01&to=2025-01-31&groupBy=day,status&currency=INR&status=CAPTURED
+     */
+    @GetMapping("/payments")
+    public ResponseEntity<?> getPaymentAnalytics(
+            @RequestParam String from,
+            @RequestParam String to,
+            @RequestParam(required = false, defaultValue = "day") String groupBy,
+            @RequestParam(required = false) String currency,
+            @RequestParam(required = false) String status) {
+        try {
+            List<String> dimensions = Arrays.stream(groupBy.split(","))
+                    .map(String::trim)
+                    .filter(dimension -> !dimension.isEmpty())
+                    .toList();
+            PaymentAnalyticsResponse response = paymentRollupService.getAnalytics(
+                    LocalDate.parse(from), LocalDate.parse(to), dimensions,
+                    currency, status != null ? status.toUpperCase() : null);
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error fetching payment analytics: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(createErrorResponse("Failed to fetch payment analytics: " + e.getMessage()));
+        }
+    }
+
+    private Map<String, String> createErrorResponse(String message) {
+        Map<String, String> response = new HashMap<>();
+        response.put("error", message);
+        response.put("timestamp", java.time.Instant.now().toString());
+        return response;
+    }
+}
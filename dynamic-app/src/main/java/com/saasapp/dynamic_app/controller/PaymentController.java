@@ -1,21 +1,36 @@
 package com.saasapp.dynamic_app.controller;
 
+import com.saasapp.dynamic_app.config.EmailExecutorMetrics;
 import com.saasapp.dynamic_app.dto.*;
+import com.saasapp.dynamic_app.entity.PaymentEntity;
+import com.saasapp.dynamic_app.exception.PaymentGatewayException;
+import com.saasapp.dynamic_app.service.EmailOutboxService;
 import com.saasapp.dynamic_app.service.EmailService;
+import com.saasapp.dynamic_app.service.IdempotencyService;
 import com.saasapp.dynamic_app.service.PaymentService;
+import com.saasapp.dynamic_app.service.PaymentWebhookService;
+import com.saasapp.dynamic_app.service.QrTokenService;
+import com.saasapp.dynamic_app.service.RazorpayGateway;
+import com.saasapp.dynamic_app.service.SmtpConnectionPool;
+import com.saasapp.dynamic_app.service.StaticPageCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/payment")
@@ -34,12 +49,43 @@ public class PaymentController {
     @Autowired
     private EmailService emailService;
 
+    @Autowired
+    private PaymentWebhookService paymentWebhookService;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private RazorpayGateway razorpayGateway;
+
+    @Autowired
+    private QrTokenService qrTokenService;
+
+    @Autowired
+    private StaticPageCache staticPageCache;
+
+    @Autowired
+    private EmailExecutorMetrics emailExecutorMetrics;
+
+    @Autowired
+    private EmailOutboxService emailOutboxService;
+
+    @Autowired
+    private SmtpConnectionPool smtpConnectionPool;
+
     /**
      * Create a payment order
      * POST /api/payment/create-order
      */
     @PostMapping("/create-order")
-    public ResponseEntity<?> createPaymentOrder(@RequestBody CreatePaymentRequest request) {
+    public ResponseEntity<?> createPaymentOrder(
+            @RequestBody CreatePaymentRequest request,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute("create-order", idempotencyKey, IdempotencyService.fingerprint(request),
+                () -> doCreatePaymentOrder(request));
+    }
+
+    private ResponseEntity<?> doCreatePaymentOrder(CreatePaymentRequest request) {
         try {
             logger.debug("Received payment order request for userId: {}, amount: {}", request.getUserId(), request.getAmount());
 
@@ -57,6 +103,8 @@ public class PaymentController {
 
             return ResponseEntity.ok(response);
 
+        } catch (PaymentGatewayException e) {
+            return gatewayErrorResponse("Failed to create payment order", e);
         } catch (Exception e) {
             logger.error("Error creating payment order: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -91,21 +139,7 @@ public class PaymentController {
             logger.info("Payment status: {}", response.getStatus());
             logger.info("Customer email: {}", response.getCustomerEmail());
 
-            // Send payment receipt email asynchronously if payment is successful (CAPTURED or SUCCESS status)
-            if ("CAPTURED".equalsIgnoreCase(response.getStatus()) || "SUCCESS".equalsIgnoreCase(response.getStatus())) {
-                logger.info(">>> PAYMENT VERIFIED: Status is {}, triggering email send", response.getStatus());
-                try {
-                    logger.info(">>> EMAIL SERVICE: About to call sendPaymentReceiptEmail method");
-                    sendPaymentReceiptEmail(response);
-                    logger.info(">>> EMAIL SERVICE: sendPaymentReceiptEmail method called successfully");
-                } catch (Exception e) {
-                    logger.warn(">>> EMAIL SERVICE FAILED: Failed to send payment receipt email, but payment was verified: {}", e.getMessage(), e);
-                    // Don't fail the payment verification if email fails
-                }
-            } else {
-                logger.info(">>> PAYMENT NOT SUCCESSFUL: Status is {}, skipping email send", response.getStatus());
-            }
-
+            // The receipt email was queued in the outbox together with the capture
             return ResponseEntity.ok(response);
 
         } catch (Exception e) {
@@ -115,6 +149,30 @@ public class PaymentController {
         }
     }
 
+    /**
+     * Razorpay webhook receiver - verifies, records and acknowledges; state changes are applied asynchronously
+     * POST /api/payment/webhook
+     */
+    @PostMapping("/webhook")
+    public ResponseEntity<?> handleWebhook(
+            @RequestBody byte[] body,
+            @RequestHeader(value = "X-Razorpay-Signature", required = false) String signature,
+            @RequestHeader(value = "X-Razorpay-Event-Id", required = false) String eventId) {
+        try {
+            boolean accepted = paymentWebhookService.accept(body, signature, eventId);
+            Map<String, String> response = new HashMap<>();
+            response.put("status", accepted ? "accepted" : "duplicate");
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Rejected webhook: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error receiving webhook: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(createErrorResponse("Failed to receive webhook: " + e.getMessage()));
+        }
+    }
+
     /**
      * Get payment details by order ID
      * GET /api/payment/order/{orderId}
@@ -150,15 +208,26 @@ public class PaymentController {
     }
 
     /**
-     * Get all payments for a user
-     * GET /api/payment/user/{userId}
+     * Get a user's payments, newest first, one page at a time
+     * GET /api/payment/user/{userId}?limit=50&cursor=...&status=CAPTURED&from=2025-01-01T00:00:00Z&to=...
      */
     @GetMapping("/user/{userId}")
-    public ResponseEntity<?> getUserPayments(@PathVariable String userId) {
+    public ResponseEntity<?> getUserPayments(
+            @PathVariable String userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to) {
         try {
             logger.debug("Fetching payments for userId: {}", userId);
-            List<PaymentResponse> responses = paymentService.getUserPayments(userId);
-            return ResponseEntity.ok(responses);
+            PaymentPageResponse page = paymentService.getUserPayments(userId, cursor, limit,
+                    status != null ? PaymentEntity.PaymentStatus.valueOf(status.toUpperCase()) : null,
+                    from != null ? Instant.parse(from) : null,
+                    to != null ? Instant.parse(to) : null);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return ResponseEntity.badRequest().body(createErrorResponse("Invalid request parameters: " + e.getMessage()));
         } catch (Exception e) {
             logger.error("Error fetching user payments: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -174,7 +243,16 @@ public class PaymentController {
     public ResponseEntity<?> refundPayment(
             @RequestParam String paymentId,
             @RequestParam(required = false) Long refundAmount,
-            @RequestParam(required = false, defaultValue = "Refund requested by user") String reason) {
+            @RequestParam(required = false, defaultValue = "Refund requested by user") String reason,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        // A 503 may hide a refund the gateway did apply, so the key is held rather than released
+        return idempotencyService.execute("refund", idempotencyKey,
+                IdempotencyService.fingerprint(paymentId, refundAmount, reason),
+                () -> doRefundPayment(paymentId, refundAmount, reason, idempotencyKey),
+                response -> response.getStatusCode().value() == HttpStatus.SERVICE_UNAVAILABLE.value());
+    }
+
+    private ResponseEntity<?> doRefundPayment(String paymentId, Long refundAmount, String reason, String idempotencyKey) {
         try {
             logger.debug("Refunding payment - paymentId: {}, amount: {}", paymentId, refundAmount);
 
@@ -182,11 +260,14 @@ public class PaymentController {
                 return ResponseEntity.badRequest().body(createErrorResponse("paymentId is required"));
             }
 
-            PaymentResponse response = paymentService.refundPayment(paymentId, refundAmount, reason);
+            PaymentResponse response = paymentService.refundPayment(paymentId, refundAmount, reason,
+                    idempotencyKey != null && !idempotencyKey.isBlank() ? idempotencyKey : null);
             logger.info("Payment refunded successfully - paymentId: {}", paymentId);
 
             return ResponseEntity.ok(response);
 
+        } catch (PaymentGatewayException e) {
+            return gatewayErrorResponse("Failed to refund payment", e);
         } catch (Exception e) {
             logger.error("Error refunding payment: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -218,8 +299,25 @@ public class PaymentController {
      */
     @GetMapping("/health")
     public ResponseEntity<?> healthCheck() {
-        Map<String, String> response = new HashMap<>();
-        response.put("status", "Payment service is running");
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", razorpayGateway.getCircuitState() == RazorpayGateway.CircuitState.CLOSED
+                ? "Payment service is running"
+                : "Payment service is degraded - gateway circuit " + razorpayGateway.getCircuitState());
+        response.put("timestamp", java.time.Instant.now().toString());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Gateway and email pipeline internals, admin only
+     * GET /api/payment/metrics
+     */
+    @GetMapping("/metrics")
+    public ResponseEntity<Map<String, Object>> getMetrics() {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("gateway", razorpayGateway.getMetrics());
+        response.put("emailExecutor", emailExecutorMetrics.snapshot());
+        response.put("emailOutbox", emailOutboxService.getStats());
+        response.put("smtpPool", smtpConnectionPool.getStats());
         response.put("timestamp", java.time.Instant.now().toString());
         return ResponseEntity.ok(response);
     }
@@ -275,105 +373,115 @@ public class PaymentController {
     /**
      * QR Code Verification Page - Display scanned QR data with beautiful UI
      * GET /api/payment/verify-qr
-     * Query params: data={encoded_qr_data}
+     * Query params: t={signed token}, or data={encoded_qr_data} for receipts issued before tokens
      */
     @GetMapping("/verify-qr")
-    public ResponseEntity<String> verifyQRCode() {
+    public ResponseEntity<byte[]> verifyQRCode(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
-            logger.debug("Serving QR verification page");
-
-            // Read the HTML file from static resources
-            String htmlContent = readHtmlFile();
+            StaticPageCache.Page page = staticPageCache.get(StaticPageCache.VERIFY_QR_PAGE);
+            boolean gzip = acceptsGzip(acceptEncoding);
+            String etag = gzip ? page.gzipEtag() : page.etag();
 
             HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.TEXT_HTML);
+            headers.setETag(etag);
+            headers.setCacheControl(CacheControl.maxAge(1, TimeUnit.HOURS).cachePublic());
+            headers.setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
 
-            return new ResponseEntity<>(htmlContent, headers, HttpStatus.OK);
+            if (ifNoneMatch != null && etagMatches(ifNoneMatch, etag)) {
+                return new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED);
+            }
+
+            headers.setContentType(new MediaType(MediaType.TEXT_HTML, java.nio.charset.StandardCharsets.UTF_8));
+            if (gzip) {
+                headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+            }
+            return new ResponseEntity<>(gzip ? page.gzip() : page.identity(), headers, HttpStatus.OK);
         } catch (Exception e) {
             logger.error("Error serving verification page: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .contentType(MediaType.TEXT_PLAIN)
-                .body("Error loading verification page: " + e.getMessage());
+                .body(("Error loading verification page: " + e.getMessage()).getBytes(java.nio.charset.StandardCharsets.UTF_8));
         }
     }
 
     /**
-     * Read HTML file from static resources
+     * True unless the client lists gzip with q=0 or doesn't list it at all
      */
-    private String readHtmlFile() throws Exception {
-        try (var inputStream = this.getClass().getClassLoader()
-                .getResourceAsStream("static/verify-qr.html")) {
-            if (inputStream == null) {
-                throw new RuntimeException("verify-qr.html not found in static resources");
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                for (int i = 1; i < parts.length; i++) {
+                    String param = parts[i].trim();
+                    if (param.startsWith("q=")) {
+                        try {
+                            return Double.parseDouble(param.substring(2)) > 0;
+                        } catch (NumberFormatException e) {
+                            return false;
+                        }
+                    }
+                }
+                return true;
             }
-            return new String(inputStream.readAllBytes(), java.nio.charset.StandardCharsets.UTF_8);
         }
+        return false;
     }
 
-    /**
-     * Create error response object
-     */
-    private Map<String, String> createErrorResponse(String message) {
-        Map<String, String> response = new HashMap<>();
-        response.put("error", message);
-        response.put("timestamp", java.time.Instant.now().toString());
-        return response;
+    private static boolean etagMatches(String ifNoneMatch, String etag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.equals("*") || value.equals(etag) || value.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
-     * Send payment receipt email asynchronously
-     * This method constructs the PaymentEmailRequest from PaymentResponse
-     * and triggers async email sending with PDF attachment
-     *
-     * @param paymentResponse Payment details from verification
+     * Check a receipt QR token and return the payment's current status
+     * GET /api/payment/verify-qr/{token}
      */
-    private void sendPaymentReceiptEmail(PaymentResponse paymentResponse) {
+    @GetMapping("/verify-qr/{token}")
+    public ResponseEntity<?> verifyQRToken(@PathVariable String token) {
         try {
-            logger.info(">>> EMAIL PREPARATION: Starting email preparation for payment: {}", paymentResponse.getRazorpayPaymentId());
-            logger.debug(">>> EMAIL PREPARATION: Payment response status: {}", paymentResponse.getStatus());
-            logger.debug(">>> EMAIL PREPARATION: Customer email: {}", paymentResponse.getCustomerEmail());
-            logger.debug(">>> EMAIL PREPARATION: Customer name: {}", paymentResponse.getCustomerName());
-
-            // Check if customer email is available
-            String emailToUse = paymentResponse.getCustomerEmail();
-            if (emailToUse == null || emailToUse.isEmpty()) {
-                logger.warn(">>> EMAIL PREPARATION WARNING: Customer email is null or empty!");
-                // Try to use userId as fallback if it looks like an email
-                if (paymentResponse.getUserId() != null && paymentResponse.getUserId().contains("@")) {
-                    logger.info(">>> EMAIL PREPARATION: Using userId as email: {}", paymentResponse.getUserId());
-                    emailToUse = paymentResponse.getUserId();
-                } else {
-                    logger.error(">>> EMAIL PREPARATION FAILED: No valid email found - customer email is null and userId is not an email!");
-                    throw new RuntimeException("Customer email is required for sending receipt. Please provide customerEmail in create-order request.");
-                }
-            }
-
-            PaymentEmailRequest emailRequest = PaymentEmailRequest.builder()
-                    .transactionId(paymentResponse.getRazorpayPaymentId())
-                    .email(emailToUse)
-                    .userName(paymentResponse.getCustomerName() != null ? paymentResponse.getCustomerName() : paymentResponse.getUserId())
-                    .amount(paymentResponse.getAmount().doubleValue())
-                    .currency(paymentResponse.getCurrency())
-                    .date(LocalDateTime.now().toString())
-                    .description(paymentResponse.getDescription())
-                    .paymentId(paymentResponse.getId())
-                    .status(paymentResponse.getStatus())
-                    .build();
-
-            logger.info(">>> EMAIL PREPARATION: EmailRequest constructed successfully");
-            logger.debug(">>> EMAIL PREPARATION: Email destination: {}", emailRequest.getEmail());
-            logger.debug(">>> EMAIL PREPARATION: Transaction ID: {}", emailRequest.getTransactionId());
-
-            logger.info(">>> ASYNC EMAIL TRIGGER: Calling emailService.sendPaymentReceiptEmailAsync()");
-            emailService.sendPaymentReceiptEmailAsync(emailRequest);
-            logger.info(">>> ASYNC EMAIL TRIGGER: sendPaymentReceiptEmailAsync() call completed (method is async, execution may continue in background)");
-
+            return qrTokenService.verify(token)
+                    .<ResponseEntity<?>>map(ResponseEntity::ok)
+                    .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                            .body(createErrorResponse("Invalid or unknown QR code")));
         } catch (Exception e) {
-            logger.error(">>> EMAIL PREPARATION FAILED: Error preparing payment receipt email: {}", e.getMessage(), e);
-            logger.error(">>> EMAIL PREPARATION FAILED: Exception type: {}, Cause: {}", e.getClass().getName(), e.getCause());
-            throw new RuntimeException("Failed to prepare payment receipt email", e);
+            logger.error("Error verifying QR token: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(createErrorResponse("Failed to verify QR code: " + e.getMessage()));
         }
     }
-}
 
+    /**
+     * 503 when the gateway is unavailable (circuit open, bulkhead full, timeout), 502 when it returned an error
+     */
+    private ResponseEntity<?> gatewayErrorResponse(String action, PaymentGatewayException e) {
+        if (e.isUnavailable()) {
+            logger.warn("{}: payment gateway unavailable ({})", action, e.getReason());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "5")
+                    .body(createErrorResponse(action + ": " + e.getMessage()));
+        }
+        logger.error("{}: payment gateway error: {}", action, e.getMessage());
+        return ResponseEntity.status(HttpStatus.BAD_GATEWAY)
+                .body(createErrorResponse(action + ": " + e.getMessage()));
+    }
 
+    /**
+     * Create error response object
+     */
+    private Map<String, String> createErrorResponse(String message) {
+        Map<String, String> response = new HashMap<>();
+        response.put("error", message);
+        response.put("timestamp", java.time.Instant.now().toString());
+        return response;
+    }
+}
@@ -0,0 +1,161 @@
+package com.saasapp.dynamic_app.controller;
+
+import com.google.zxing.WriterException;
+import com.saasapp.dynamic_app.dto.QRCodeBatchRequest;
+import com.saasapp.dynamic_app.dto.QRCodeBatchResponse;
+import com.saasapp.dynamic_app.service.QRCodeService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@RestController
+@RequestMapping("/api/qr")
+public class QRCodeController {
+    private static final Logger logger = LoggerFactory.getLogger(QRCodeController.class);
+
+    private static final int DEFAULT_SIZE = 300;
+    private static final int MAX_SIZE = 1000;
+
+    @Autowired
+    private QRCodeService qrCodeService;
+
+    @Value("${qr.batch.max-items:100}")
+    private int maxBatchItems;
+
+    /**
+     * Generate a single QR code
+     * GET /api/qr?data=...&size=300&format=png|svg|matrix
+     */
+    @GetMapping
+    public ResponseEntity<?> generateQRCode(
+            @RequestParam String data,
+            @RequestParam(required = false, defaultValue = "300") int size,
+            @RequestParam(required = false, defaultValue = "png") String format) {
+        try {
+            QRCodeService.Format qrFormat = parseFormat(format);
+            validate(data, size);
+            byte[] content = qrCodeService.generate(data, size, size, qrFormat);
+            // The same request always renders the same image
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(qrFormat.getContentType()))
+                    .cacheControl(CacheControl.maxAge(1, TimeUnit.DAYS).cachePublic())
+                    .body(content);
+        } catch (IllegalArgumentException | WriterException e) {
+            return ResponseEntity.badRequest().body(createErrorResponse("Invalid QR request: " + e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error generating QR code: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(createErrorResponse("Failed to generate QR code: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Generate many QR codes in one call; items render in parallel and come back in request order
+     * POST /api/qr/batch
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<?> generateQRCodeBatch(@RequestBody QRCodeBatchRequest request) {
+        if (request.getItems() == null || request.getItems().isEmpty()) {
+            return ResponseEntity.badRequest().body(createErrorResponse("items are required"));
+        }
+        if (request.getItems().size() > maxBatchItems) {
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("A batch cannot contain more than " + maxBatchItems + " items"));
+        }
+
+        List<QRCodeService.BatchItem> items = new ArrayList<>(request.getItems().size());
+        try {
+            int defaultSize = request.getSize() != null ? request.getSize() : DEFAULT_SIZE;
+            String defaultFormat = request.getFormat() != null ? request.getFormat() : "png";
+            for (QRCodeBatchRequest.Item item : request.getItems()) {
+                int size = item.getSize() != null ? item.getSize() : defaultSize;
+                validate(item.getData(), size);
+                items.add(new QRCodeService.BatchItem(item.getData(), size,
+                        parseFormat(item.getFormat() != null ? item.getFormat() : defaultFormat)));
+            }
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(createErrorResponse("Invalid QR request: " + e.getMessage()));
+        }
+
+        try {
+            List<QRCodeService.BatchResult> results = qrCodeService.generateBatch(items);
+            Base64.Encoder encoder = Base64.getEncoder();
+            List<QRCodeBatchResponse.Item> responseItems = new ArrayList<>(results.size());
+            int failed = 0;
+            for (int i = 0; i < results.size(); i++) {
+                QRCodeService.BatchResult result = results.get(i);
+                if (result.error() != null) {
+                    failed++;
+                }
+                responseItems.add(QRCodeBatchResponse.Item.builder()
+                        .index(i)
+                        .format(result.format().name())
+                        .contentType(result.format().getContentType())
+                        .content(result.content() != null ? encoder.encodeToString(result.content()) : null)
+                        .error(result.error())
+                        .build());
+            }
+
+            return ResponseEntity.ok(QRCodeBatchResponse.builder()
+                    .items(responseItems)
+                    .generated(results.size() - failed)
+                    .failed(failed)
+                    .build());
+        } catch (Exception e) {
+            logger.error("Error generating QR code batch: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(createErrorResponse("Failed to generate QR codes: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * QR render cache statistics
+     * GET /api/qr/stats
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        return ResponseEntity.ok(qrCodeService.getCacheStats());
+    }
+
+    private static QRCodeService.Format parseFormat(String format) {
+        try {
+            return QRCodeService.Format.valueOf(format.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported format: " + format);
+        }
+    }
+
+    private static void validate(String data, int size) {
+        if (data == null || data.isEmpty()) {
+            throw new IllegalArgumentException("data is required");
+        }
+        if (size <= 0 || size > MAX_SIZE) {
+            throw new IllegalArgumentException("size must be between 1 and " + MAX_SIZE);
+        }
+    }
+
+    private Map<String, String> createErrorResponse(String message) {
+        Map<String, String> response = new HashMap<>();
+        response.put("error", message);
+        response.put("timestamp", java.time.Instant.now().toString());
+        return response;
+    }
+}
@@ -0,0 +1,161 @@
+package com.saasapp.dynamic_app.controller;
+
+import com.saasapp.dynamic_app.dto.PaymentEmailRequest;
+import com.saasapp.dynamic_app.dto.PaymentPdfDTO;
+import com.saasapp.dynamic_app.dto.PaymentResponse;
+import com.saasapp.dynamic_app.service.PaymentService;
+import com.saasapp.dynamic_app.service.ReceiptStore;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Receipt PDF downloads served from the receipt store
+ * GET /api/payment/receipts/{paymentId} - supports ETag/If-None-Match and single byte ranges
+ */
+@RestController
+@RequestMapping("/api/payment/receipts")
+public class ReceiptController {
+    private static final Logger logger = LoggerFactory.getLogger(ReceiptController.class);
+
+    // Tomcat NIO sendfile request attributes: the connector writes the file to the socket itself
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private ReceiptStore receiptStore;
+
+    @GetMapping("/{paymentId}")
+    public void downloadReceipt(
+            @PathVariable String paymentId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+            @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        PaymentResponse payment;
+        try {
+            payment = paymentService.getPaymentByPaymentId(paymentId);
+        } catch (RuntimeException e) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "Payment not found");
+            return;
+        }
+
+        PaymentPdfDTO receiptData = PaymentPdfDTO.fromEmailRequest(PaymentEmailRequest.forReceipt(payment));
+        ReceiptStore.StoredReceipt receipt = receiptStore.getOrRender(receiptData);
+        String etag = receipt.etag();
+        long size = receipt.size();
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, max-age=86400");
+
+        if (ifNoneMatch != null && (ifNoneMatch.equals(etag) || ifNoneMatch.equals("*"))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long start = 0;
+        long end = size - 1;
+        boolean partial = false;
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            long[] bounds = parseRange(range, size);
+            if (bounds == null) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            start = bounds[0];
+            end = bounds[1];
+            partial = true;
+        }
+
+        long length = end - start + 1;
+        response.setStatus(partial ? HttpServletResponse.SC_PARTIAL_CONTENT : HttpServletResponse.SC_OK);
+        response.setContentType(MediaType.APPLICATION_PDF_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "inline; filename=\"Payment_Receipt_" + paymentId.replaceAll("[^A-Za-z0-9_-]", "") + ".pdf\"");
+        response.setContentLengthLong(length);
+        if (partial) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            request.setAttribute(SENDFILE_FILENAME, receipt.path().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+
+        try (FileChannel file = FileChannel.open(receipt.path(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = length;
+            while (remaining > 0) {
+                long written = file.transferTo(position, remaining, out);
+                if (written <= 0) {
+                    break;
+                }
+                position += written;
+                remaining -= written;
+            }
+        } catch (IOException e) {
+            // Usually the client went away mid-download
+            logger.debug("Receipt download for {} aborted: {}", paymentId, e.getMessage());
+        }
+    }
+
+    /**
+     * Parse a single "bytes=" range; returns null if it is malformed or not satisfiable
+     */
+    private static long[] parseRange(String range, long size) {
+        if (!range.startsWith("bytes=") || range.indexOf(',') >= 0 || size == 0) {
+            return null;
+        }
+        String spec = range.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                // Suffix range: the last N bytes
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) {
+                    return null;
+                }
+                return new long[]{Math.max(0, size - suffix), size - 1};
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+            if (start >= size || start > end) {
+                return null;
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.saasapp.dynamic_app.controller;
+
+import com.saasapp.dynamic_app.entity.PaymentEntity;
+import com.saasapp.dynamic_app.entity.User;
+import com.saasapp.dynamic_app.service.StatementExportService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/statements")
+public class StatementController {
+    private static final Logger logger = LoggerFactory.getLogger(StatementController.class);
+
+    @Autowired
+    private StatementExportService statementExportService;
+
+    /**
+     * Download all receipts of a user for a period as a ZIP archive
+     * GET /api/statements/{userId}/receipts?from=2025-01-01T00:00:00Z&to=2025-02-01T00:00:00Z&status=CAPTURED
+     */
+    @GetMapping("/{userId}/receipts")
+    public ResponseEntity<?> exportReceipts(
+            @AuthenticationPrincipal User principal,
+            @PathVariable String userId,
+            @RequestParam String from,
+            @RequestParam String to,
+            @RequestParam(required = false, defaultValue = "CAPTURED") String status) {
+        if (!canExport(principal, userId)) {
+            logger.warn("User {} denied statement export for userId: {}",
+                    principal != null ? principal.getEmail() : null, userId);
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(createErrorResponse("Not allowed to export receipts for this user"));
+        }
+
+        Instant fromInstant;
+        Instant toInstant;
+        PaymentEntity.PaymentStatus paymentStatus;
+        try {
+            fromInstant = Instant.parse(from);
+            toInstant = Instant.parse(to);
+            paymentStatus = PaymentEntity.PaymentStatus.valueOf(status.toUpperCase());
+            statementExportService.validate(fromInstant, toInstant);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return ResponseEntity.badRequest().body(createErrorResponse("Invalid request parameters: " + e.getMessage()));
+        }
+
+        StreamingResponseBody body = out -> {
+            try {
+                statementExportService.writeReceiptsZip(userId, paymentStatus, fromInstant, toInstant, out);
+            } catch (Exception e) {
+                // Headers are already sent; the truncated archive tells the client the export failed
+                logger.error("Statement export failed for userId: {}: {}", userId, e.getMessage());
+                throw e;
+            }
+        };
+
+        String filename = "receipts_" + userId.replaceAll("[^A-Za-z0-9_-]", "") + "_"
+                + from.substring(0, Math.min(10, from.length())) + ".zip";
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .body(body);
+    }
+
+    /**
+     * Payments store the client's userId, which is the account's email, username or id; admins may export any user
+     */
+    private static boolean canExport(User principal, String userId) {
+        if (principal == null) {
+            return false;
+        }
+        return principal.getRole() == User.UserRole.ADMIN
+                || userId.equalsIgnoreCase(principal.getEmail())
+                || userId.equals(principal.getUsername())
+                || userId.equals(String.valueOf(principal.getId()));
+    }
+
+    private Map<String, String> createErrorResponse(String message) {
+        Map<String, String> response = new HashMap<>();
+        response.put("error", message);
+        response.put("timestamp", java.time.Instant.now().toString());
+        return response;
+    }
+}
@@ -0,0 +1,25 @@
+package com.saasapp.dynamic_app.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PaymentAnalyticsBucket {
+    // Dimensions not in groupBy are left null
+    private LocalDate day;
+    private String currency;
+    private String paymentMethod;
+    private String status;
+    private long count;
+    private BigDecimal totalAmount;
+}
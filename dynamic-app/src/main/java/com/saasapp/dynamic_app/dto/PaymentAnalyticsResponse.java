@@ -0,0 +1,24 @@
+package com.saasapp.dynamic_app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PaymentAnalyticsResponse {
+    private LocalDate from;
+    private LocalDate to;
+    // Payment changes up to this instant are reflected in the rollups
+    private Instant asOf;
+    private List<String> groupBy;
+    private List<PaymentAnalyticsBucket> buckets;
+    private List<PaymentAnalyticsBucket> totalsByStatus;
+}
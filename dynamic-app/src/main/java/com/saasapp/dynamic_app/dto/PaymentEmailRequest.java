@@ -5,6 +5,9 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
 /**
  * Data Transfer Object for Payment Email Request
  * Contains all payment details needed to send email receipt
@@ -24,5 +27,31 @@ public class PaymentEmailRequest {
     private Long paymentId;
     private String status;
     private String qrCodeUrl;
+
+    /**
+     * Receipt request for a payment. Built only from stored payment fields (the date is the
+     * payment's creation time), so the same payment always yields the same receipt content.
+     * Email falls back to userId when it looks like an address, otherwise stays null.
+     */
+    public static PaymentEmailRequest forReceipt(PaymentResponse payment) {
+        String email = payment.getCustomerEmail();
+        if ((email == null || email.isEmpty()) && payment.getUserId() != null && payment.getUserId().contains("@")) {
+            email = payment.getUserId();
+        }
+
+        return PaymentEmailRequest.builder()
+                .transactionId(payment.getRazorpayPaymentId())
+                .email(email != null && !email.isEmpty() ? email : null)
+                .userName(payment.getCustomerName() != null ? payment.getCustomerName() : payment.getUserId())
+                .amount(payment.getAmount().doubleValue())
+                .currency(payment.getCurrency())
+                .date(payment.getCreatedAt() != null
+                        ? LocalDateTime.ofInstant(payment.getCreatedAt(), ZoneId.systemDefault()).withNano(0).toString()
+                        : null)
+                .description(payment.getDescription())
+                .paymentId(payment.getId())
+                .status(payment.getStatus())
+                .build();
+    }
 }
 
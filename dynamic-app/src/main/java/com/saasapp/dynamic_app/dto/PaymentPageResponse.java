@@ -0,0 +1,20 @@
+package com.saasapp.dynamic_app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PaymentPageResponse {
+    private List<PaymentResponse> items;
+    // Opaque cursor for the next page; null when there are no more payments
+    private String nextCursor;
+    private boolean hasMore;
+    private int limit;
+}
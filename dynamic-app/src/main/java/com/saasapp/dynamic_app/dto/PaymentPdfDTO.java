@@ -5,6 +5,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.LocalDateTime;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -19,5 +21,21 @@ public class PaymentPdfDTO {
     private String paymentStatus;
     private String paymentDate;
     private String description;
+    // Signed URL encoded into the receipt QR code; set by ReceiptStore for stored payments
+    private String verificationUrl;
+
+    public static PaymentPdfDTO fromEmailRequest(PaymentEmailRequest request) {
+        return PaymentPdfDTO.builder()
+                .transactionId(request.getTransactionId())
+                .paymentId(request.getPaymentId())
+                .userName(request.getUserName())
+                .userEmail(request.getEmail())
+                .amount(request.getAmount())
+                .currency(request.getCurrency() != null ? request.getCurrency() : "INR")
+                .paymentStatus(request.getStatus() != null ? request.getStatus() : "SUCCESS")
+                .paymentDate(request.getDate() != null ? request.getDate() : LocalDateTime.now().toString())
+                .description(request.getDescription())
+                .build();
+    }
 }
 
@@ -0,0 +1,14 @@
+package com.saasapp.dynamic_app.dto;
+
+import com.saasapp.dynamic_app.entity.PaymentEntity;
+
+/**
+ * Columns of an unsettled payment needed to reconcile it against the gateway
+ */
+public interface PaymentReconciliationRow {
+    Long getId();
+
+    String getRazorpayOrderId();
+
+    PaymentEntity.PaymentStatus getStatus();
+}
@@ -49,5 +49,25 @@ public class PaymentResponse {
                 .updatedAt(payment.getUpdatedAt())
                 .build();
     }
+
+    public static PaymentResponse fromView(PaymentView payment) {
+        return PaymentResponse.builder()
+                .id(payment.getId())
+                .userId(payment.getUserId())
+                .razorpayOrderId(payment.getRazorpayOrderId())
+                .razorpayPaymentId(payment.getRazorpayPaymentId())
+                .amount(payment.getAmount())
+                .currency(payment.getCurrency())
+                .description(payment.getDescription())
+                .status(payment.getStatus().toString())
+                .paymentMethod(payment.getPaymentMethod())
+                .customerEmail(payment.getCustomerEmail())
+                .customerPhone(payment.getCustomerPhone())
+                .customerName(payment.getCustomerName())
+                .errorMessage(payment.getErrorMessage())
+                .createdAt(payment.getCreatedAt())
+                .updatedAt(payment.getUpdatedAt())
+                .build();
+    }
 }
 
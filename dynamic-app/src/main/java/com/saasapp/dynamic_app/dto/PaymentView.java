@@ -0,0 +1,42 @@
+package com.saasapp.dynamic_app.dto;
+
+import com.saasapp.dynamic_app.entity.PaymentEntity;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Closed projection of the payments columns exposed through PaymentResponse
+ * Lets read endpoints select only these columns instead of hydrating managed entities
+ */
+public interface PaymentView {
+    Long getId();
+
+    String getUserId();
+
+    String getRazorpayOrderId();
+
+    String getRazorpayPaymentId();
+
+    BigDecimal getAmount();
+
+    String getCurrency();
+
+    String getDescription();
+
+    PaymentEntity.PaymentStatus getStatus();
+
+    String getPaymentMethod();
+
+    String getCustomerEmail();
+
+    String getCustomerPhone();
+
+    String getCustomerName();
+
+    String getErrorMessage();
+
+    Instant getCreatedAt();
+
+    Instant getUpdatedAt();
+}
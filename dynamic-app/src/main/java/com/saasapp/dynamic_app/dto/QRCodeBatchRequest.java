@@ -0,0 +1,28 @@
+package com.saasapp.dynamic_app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class QRCodeBatchRequest {
+    // Defaults for items that don't set their own size or format
+    private Integer size;
+    private String format;
+    private List<Item> items;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item {
+        private String data;
+        private Integer size;
+        private String format;
+    }
+}
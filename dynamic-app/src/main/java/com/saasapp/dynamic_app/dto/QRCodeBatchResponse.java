@@ -0,0 +1,31 @@
+package com.saasapp.dynamic_app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class QRCodeBatchResponse {
+    private List<Item> items;
+    private int generated;
+    private int failed;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Item {
+        private int index;
+        private String format;
+        private String contentType;
+        // Base64 of the rendered bytes; null when the item failed
+        private String content;
+        private String error;
+    }
+}
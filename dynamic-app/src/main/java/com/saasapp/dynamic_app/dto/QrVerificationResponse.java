@@ -0,0 +1,28 @@
+package com.saasapp.dynamic_app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Payment details shown to whoever scans a receipt QR code; deliberately excludes customer contact data
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class QrVerificationResponse {
+    private boolean valid;
+    private String transactionId;
+    private String orderId;
+    private BigDecimal amount;
+    private String currency;
+    private String status;
+    private String description;
+    private Instant paymentDate;
+    private Instant checkedAt;
+}
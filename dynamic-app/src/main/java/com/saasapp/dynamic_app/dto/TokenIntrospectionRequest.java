@@ -0,0 +1,18 @@
+package com.saasapp.dynamic_app.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TokenIntrospectionRequest {
+
+    @NotEmpty(message = "At least one token is required")
+    @Size(max = 1000, message = "At most 1000 tokens can be introspected per request")
+    private List<String> tokens;
+}
@@ -0,0 +1,20 @@
+package com.saasapp.dynamic_app.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TokenIntrospectionResult {
+    // Position of the token in the request
+    private Integer index;
+    private Boolean active;
+    private String subject;
+    private String type;
+    private String sessionId;
+    private Long expiresAt; // Epoch seconds
+    private String error;
+}
@@ -0,0 +1,74 @@
+package com.saasapp.dynamic_app.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "email_outbox", indexes = {
+        @Index(name = "ux_email_outbox_dedup_key", columnList = "dedup_key", unique = true),
+        @Index(name = "ix_email_outbox_status_next_attempt_at", columnList = "status, next_attempt_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class EmailOutboxMessage {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // One message per business event, e.g. "receipt:{orderId}", so repeated triggers don't send twice
+    @Column(name = "dedup_key", nullable = false, length = 200)
+    private String dedupKey;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private Type type;
+
+    // Null for receipts; the address is resolved from the payment when the message is sent
+    @Column(length = 320)
+    private String recipient;
+
+    @Column(name = "recipient_name")
+    private String recipientName;
+
+    // Razorpay order id for receipts
+    @Column(length = 100)
+    private String reference;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private Instant nextAttemptAt;
+
+    // Lease held by the dispatcher that claimed the message; an expired lease makes it claimable again
+    @Column(name = "locked_until")
+    private Instant lockedUntil;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "sent_at")
+    private Instant sentAt;
+
+    public enum Type {
+        WELCOME, PAYMENT_RECEIPT
+    }
+
+    public enum Status {
+        PENDING, SENDING, SENT, DEAD
+    }
+}
@@ -0,0 +1,48 @@
+package com.saasapp.dynamic_app.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "idempotency_keys", indexes = {
+        @Index(name = "ix_idempotency_keys_expires_at", columnList = "expires_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IdempotencyRecord {
+    // Endpoint scope + client supplied Idempotency-Key
+    @Id
+    @Column(name = "idempotency_key", length = 320)
+    private String idempotencyKey;
+
+    // SHA-256 of the request parameters, so a key cannot be reused for a different request
+    @Column(name = "request_hash", nullable = false, length = 64)
+    private String requestHash;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status;
+
+    @Column(name = "response_status")
+    private Integer responseStatus;
+
+    @Column(name = "response_body", columnDefinition = "TEXT")
+    private String responseBody;
+
+    @Column(name = "locked_at", nullable = false)
+    private Instant lockedAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    public enum Status {
+        IN_PROGRESS, COMPLETED
+    }
+}
@@ -0,0 +1,36 @@
+package com.saasapp.dynamic_app.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Resume point of a batch job: everything before the watermark has been processed
+ */
+@Entity
+@Table(name = "job_checkpoints")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class JobCheckpoint {
+    @Id
+    @Column(name = "job_name", length = 64)
+    private String jobName;
+
+    @Column(name = "watermark", nullable = false)
+    private Instant watermark;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = Instant.now();
+    }
+}
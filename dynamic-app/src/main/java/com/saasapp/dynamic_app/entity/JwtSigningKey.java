@@ -0,0 +1,38 @@
+package com.saasapp.dynamic_app.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "jwt_signing_keys")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class JwtSigningKey {
+
+    // RFC 7638 thumbprint of the public key, published as the JWT "kid" header
+    @Id
+    @Column(name = "kid", length = 64)
+    private String kid;
+
+    @Column(nullable = false, length = 16)
+    private String algorithm;
+
+    // Base64 X.509 SubjectPublicKeyInfo
+    @Column(name = "public_key", nullable = false, columnDefinition = "TEXT")
+    private String publicKey;
+
+    // Base64 PKCS#8
+    @Column(name = "private_key", nullable = false, columnDefinition = "TEXT")
+    private String privateKey;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt;
+
+    // After this point no token signed with the key can still be valid
+    @Column(name = "retire_at", nullable = false)
+    private Instant retireAt;
+}
@@ -1,94 +0,0 @@
-package com.saasapp.dynamic_app.entity;
-
-import jakarta.persistence.*;
-import lombok.AllArgsConstructor;
-import lombok.Builder;
-import lombok.Data;
-import lombok.NoArgsConstructor;
-import java.math.BigDecimal;
-import java.time.Instant;
-
-@Entity
-@Table(name = "payments")
-@Data
-@NoArgsConstructor
-@AllArgsConstructor
-@Builder
-public class Payment {
-    @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-    private Long id;
-
-    @Column(name = "user_id", nullable = false)
-    private String userId;
-
-    @Column(name = "razorpay_order_id", nullable = false)
-    private String razorpayOrderId;
-
-    @Column(name = "razorpay_payment_id")
-    private String razorpayPaymentId;
-
-    @Column(name = "razorpay_signature")
-    private String razorpaySignature;
-
-    @Column(name = "amount", nullable = false)
-    private BigDecimal amount;
-
-    @Column(name = "currency", nullable = false)
-    private String currency;
-
-    @Column(name = "description")
-    private String description;
-
-    @Column(name = "receipt")
-    private String receipt;
-
-    @Column(name = "status", nullable = false)
-    @Enumerated(EnumType.STRING)
-    private PaymentStatus status;
-
-    @Column(name = "payment_method")
-    private String paymentMethod;
-
-    @Column(name = "customer_email")
-    private String customerEmail;
-
-    @Column(name = "customer_phone")
-    private String customerPhone;
-
-    @Column(name = "customer_name")
-    private String customerName;
-
-    @Column(name = "notes")
-    private String notes;
-
-    @Column(name = "error_message")
-    private String errorMessage;
-
-    @Column(name = "created_at", nullable = false, updatable = false)
-    private Instant createdAt;
-
-    @Column(name = "updated_at", nullable = false)
-    private Instant updatedAt;
-
-    @PrePersist
-    protected void onCreate() {
-        createdAt = Instant.now();
-        updatedAt = Instant.now();
-    }
-
-    @PreUpdate
-    protected void onUpdate() {
-        updatedAt = Instant.now();
-    }
-
-    public enum PaymentStatus {
-        PENDING,
-        AUTHORIZED,
-        CAPTURED,
-        FAILED,
-        REFUNDED,
-        CANCELLED
-    }
-}
-
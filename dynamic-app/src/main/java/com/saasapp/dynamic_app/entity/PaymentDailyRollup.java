@@ -0,0 +1,33 @@
+package com.saasapp.dynamic_app.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Payments per day, currency, method and status; maintained by PaymentRollupService
+ */
+@Entity
+@Table(name = "payment_daily_rollups")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PaymentDailyRollup {
+    @EmbeddedId
+    private PaymentDailyRollupId id;
+
+    @Column(name = "payment_count", nullable = false)
+    private Long paymentCount;
+
+    @Column(name = "total_amount", nullable = false)
+    private BigDecimal totalAmount;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+}
@@ -0,0 +1,29 @@
+package com.saasapp.dynamic_app.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+@Embeddable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentDailyRollupId implements Serializable {
+    @Column(name = "rollup_date", nullable = false)
+    private LocalDate rollupDate;
+
+    @Column(name = "currency", nullable = false, length = 8)
+    private String currency;
+
+    // "unknown" until the payment method has been fetched from the gateway
+    @Column(name = "payment_method", nullable = false, length = 32)
+    private String paymentMethod;
+
+    @Column(name = "status", nullable = false, length = 16)
+    private String status;
+}
@@ -7,9 +7,21 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
 
 @Entity
-@Table(name = "payments")
+@Table(name = "payments", indexes = {
+        @Index(name = "ux_payments_razorpay_order_id", columnList = "razorpay_order_id", unique = true),
+        @Index(name = "ux_payments_razorpay_payment_id", columnList = "razorpay_payment_id", unique = true),
+        @Index(name = "ix_payments_user_id_created_at", columnList = "user_id, created_at DESC"),
+        @Index(name = "ix_payments_status_created_at", columnList = "status, created_at"),
+        @Index(name = "ix_payments_created_at", columnList = "created_at"),
+        @Index(name = "ix_payments_updated_at", columnList = "updated_at")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -82,13 +94,47 @@ public class PaymentEntity {
         updatedAt = Instant.now();
     }
 
+    /**
+     * Payment lifecycle. Status changes are applied with conditional UPDATEs guarded by
+     * {@link #sourcesOf(PaymentStatus)}, so concurrent writers (verify, webhooks, refunds)
+     * cannot move a payment backwards.
+     */
     public enum PaymentStatus {
         PENDING,
         AUTHORIZED,
         CAPTURED,
         FAILED,
         REFUNDED,
-        CANCELLED
+        CANCELLED;
+
+        private static final Map<PaymentStatus, Set<PaymentStatus>> NEXT = new EnumMap<>(PaymentStatus.class);
+        private static final Map<PaymentStatus, Set<PaymentStatus>> SOURCES = new EnumMap<>(PaymentStatus.class);
+
+        static {
+            NEXT.put(PENDING, EnumSet.of(AUTHORIZED, CAPTURED, FAILED, CANCELLED));
+            NEXT.put(AUTHORIZED, EnumSet.of(CAPTURED, FAILED, CANCELLED));
+            // The gateway can still report success after a failed attempt on the same order
+            NEXT.put(FAILED, EnumSet.of(AUTHORIZED, CAPTURED));
+            NEXT.put(CAPTURED, EnumSet.of(REFUNDED));
+            NEXT.put(REFUNDED, EnumSet.noneOf(PaymentStatus.class));
+            NEXT.put(CANCELLED, EnumSet.noneOf(PaymentStatus.class));
+
+            for (PaymentStatus target : values()) {
+                SOURCES.put(target, EnumSet.noneOf(PaymentStatus.class));
+            }
+            NEXT.forEach((source, targets) -> targets.forEach(target -> SOURCES.get(target).add(source)));
+        }
+
+        public boolean canTransitionTo(PaymentStatus next) {
+            return NEXT.get(this).contains(next);
+        }
+
+        /**
+         * Statuses a payment may be in to move to the given target
+         */
+        public static Set<PaymentStatus> sourcesOf(PaymentStatus target) {
+            return Collections.unmodifiableSet(SOURCES.get(target));
+        }
     }
 }
 
@@ -0,0 +1,43 @@
+package com.saasapp.dynamic_app.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "payment_webhook_events", indexes = {
+        @Index(name = "ix_payment_webhook_events_processed_at", columnList = "processed_at, received_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PaymentWebhookEvent {
+    // Razorpay x-razorpay-event-id, used to drop redeliveries
+    @Id
+    @Column(name = "event_id", length = 64)
+    private String eventId;
+
+    @Column(name = "event_type", nullable = false)
+    private String eventType;
+
+    @Column(name = "payload", nullable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    @Column(name = "received_at", nullable = false)
+    private Instant receivedAt;
+
+    @Column(name = "processed_at")
+    private Instant processedAt;
+
+    // Failed apply attempts; events at payment.webhook.max-attempts are left for manual inspection
+    @Column(name = "attempts", nullable = false, columnDefinition = "integer default 0 not null")
+    private int attempts;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+}
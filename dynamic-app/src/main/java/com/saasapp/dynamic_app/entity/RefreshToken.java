@@ -0,0 +1,56 @@
+package com.saasapp.dynamic_app.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "refresh_tokens", indexes = {
+        @Index(name = "ix_refresh_tokens_session_id", columnList = "session_id"),
+        @Index(name = "ix_refresh_tokens_user_email", columnList = "user_email"),
+        @Index(name = "ix_refresh_tokens_revoked_at", columnList = "revoked_at")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RefreshToken {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // jti claim of the refresh token
+    @Column(name = "token_id", nullable = false, unique = true, length = 36)
+    private String tokenId;
+
+    // sid claim shared by every token issued for the same login session
+    @Column(name = "session_id", nullable = false, length = 36)
+    private String sessionId;
+
+    @Column(name = "user_email", nullable = false)
+    private String userEmail;
+
+    @Builder.Default
+    @Column(nullable = false)
+    private Boolean used = false;
+
+    @Builder.Default
+    @Column(nullable = false)
+    private Boolean revoked = false;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    @Column(name = "revoked_at")
+    private Instant revokedAt;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = Instant.now();
+    }
+}
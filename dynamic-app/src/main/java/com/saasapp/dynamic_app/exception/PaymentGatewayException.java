@@ -0,0 +1,35 @@
+package com.saasapp.dynamic_app.exception;
+
+/**
+ * Exception thrown when a payment gateway call is rejected or fails
+ * Rejections by the resilience layer mean the gateway is treated as unavailable
+ */
+public class PaymentGatewayException extends RuntimeException {
+
+    public enum Reason {
+        CIRCUIT_OPEN, BULKHEAD_FULL, TIMEOUT, FAILURE
+    }
+
+    private final Reason reason;
+
+    public PaymentGatewayException(Reason reason, String message) {
+        super(message);
+        this.reason = reason;
+    }
+
+    public PaymentGatewayException(Reason reason, String message, Throwable cause) {
+        super(message, cause);
+        this.reason = reason;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+    /**
+     * True when the call never reached, or never heard back from, the gateway
+     */
+    public boolean isUnavailable() {
+        return reason != Reason.FAILURE;
+    }
+}
@@ -0,0 +1,60 @@
+package com.saasapp.dynamic_app.repository;
+
+import com.saasapp.dynamic_app.entity.EmailOutboxMessage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+@Repository
+public interface EmailOutboxRepository extends JpaRepository<EmailOutboxMessage, Long> {
+
+    /**
+     * Queue a message in the caller's transaction unless one with the same dedup key exists; returns 0 for a duplicate
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO email_outbox (dedup_key, type, recipient, recipient_name, reference, status, attempts, next_attempt_at, created_at) " +
+            "VALUES (:dedupKey, :type, :recipient, :recipientName, :reference, 'PENDING', 0, :now, :now) " +
+            "ON CONFLICT (dedup_key) DO NOTHING",
+            nativeQuery = true)
+    int enqueue(@Param("dedupKey") String dedupKey,
+                @Param("type") String type,
+                @Param("recipient") String recipient,
+                @Param("recipientName") String recipientName,
+                @Param("reference") String reference,
+                @Param("now") Instant now);
+
+    @Modifying
+    @Transactional
+    @Query("update EmailOutboxMessage m set m.status = com.saasapp.dynamic_app.entity.EmailOutboxMessage.Status.SENT, " +
+            "m.sentAt = :now, m.lockedUntil = null, m.lastError = null " +
+            "where m.id = :id and m.status = com.saasapp.dynamic_app.entity.EmailOutboxMessage.Status.SENDING")
+    int markSent(@Param("id") Long id, @Param("now") Instant now);
+
+    @Modifying
+    @Transactional
+    @Query("update EmailOutboxMessage m set m.status = com.saasapp.dynamic_app.entity.EmailOutboxMessage.Status.PENDING, " +
+            "m.nextAttemptAt = :nextAttemptAt, m.lockedUntil = null, m.lastError = :error " +
+            "where m.id = :id and m.status = com.saasapp.dynamic_app.entity.EmailOutboxMessage.Status.SENDING")
+    int markRetry(@Param("id") Long id, @Param("nextAttemptAt") Instant nextAttemptAt, @Param("error") String error);
+
+    @Modifying
+    @Transactional
+    @Query("update EmailOutboxMessage m set m.status = com.saasapp.dynamic_app.entity.EmailOutboxMessage.Status.DEAD, " +
+            "m.lockedUntil = null, m.lastError = :error " +
+            "where m.id = :id and m.status = com.saasapp.dynamic_app.entity.EmailOutboxMessage.Status.SENDING")
+    int markDead(@Param("id") Long id, @Param("error") String error);
+
+    @Modifying
+    @Transactional
+    @Query("delete from EmailOutboxMessage m where m.status = com.saasapp.dynamic_app.entity.EmailOutboxMessage.Status.SENT " +
+            "and m.sentAt < :cutoff")
+    int deleteSentBefore(@Param("cutoff") Instant cutoff);
+
+    long countByStatus(EmailOutboxMessage.Status status);
+}
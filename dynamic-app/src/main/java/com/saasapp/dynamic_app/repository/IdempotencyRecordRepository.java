@@ -0,0 +1,59 @@
+package com.saasapp.dynamic_app.repository;
+
+import com.saasapp.dynamic_app.entity.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    /**
+     * Claim a key; returns 0 if another request already holds or completed it
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO idempotency_keys (idempotency_key, request_hash, status, locked_at, expires_at) " +
+            "VALUES (:key, :requestHash, 'IN_PROGRESS', :now, :expiresAt) ON CONFLICT (idempotency_key) DO NOTHING",
+            nativeQuery = true)
+    int claim(@Param("key") String key,
+              @Param("requestHash") String requestHash,
+              @Param("now") Instant now,
+              @Param("expiresAt") Instant expiresAt);
+
+    /**
+     * Take over a key whose owner stopped before completing it
+     */
+    @Modifying
+    @Transactional
+    @Query("update IdempotencyRecord r set r.lockedAt = :now " +
+            "where r.idempotencyKey = :key and r.status = com.saasapp.dynamic_app.entity.IdempotencyRecord.Status.IN_PROGRESS " +
+            "and r.lockedAt < :staleBefore")
+    int takeOverStale(@Param("key") String key,
+                      @Param("staleBefore") Instant staleBefore,
+                      @Param("now") Instant now);
+
+    @Modifying
+    @Transactional
+    @Query("update IdempotencyRecord r set r.status = com.saasapp.dynamic_app.entity.IdempotencyRecord.Status.COMPLETED, " +
+            "r.responseStatus = :responseStatus, r.responseBody = :responseBody where r.idempotencyKey = :key")
+    int complete(@Param("key") String key,
+                 @Param("responseStatus") int responseStatus,
+                 @Param("responseBody") String responseBody);
+
+    @Modifying
+    @Transactional
+    @Query("delete from IdempotencyRecord r where r.idempotencyKey = :key " +
+            "and r.status = com.saasapp.dynamic_app.entity.IdempotencyRecord.Status.IN_PROGRESS")
+    int release(@Param("key") String key);
+
+    @Modifying
+    @Transactional
+    @Query("delete from IdempotencyRecord r where r.expiresAt < :now")
+    int deleteExpired(@Param("now") Instant now);
+}
@@ -0,0 +1,9 @@
+package com.saasapp.dynamic_app.repository;
+
+import com.saasapp.dynamic_app.entity.JobCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface JobCheckpointRepository extends JpaRepository<JobCheckpoint, String> {
+}
@@ -0,0 +1,23 @@
+package com.saasapp.dynamic_app.repository;
+
+import com.saasapp.dynamic_app.entity.JwtSigningKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface JwtSigningKeyRepository extends JpaRepository<JwtSigningKey, String> {
+
+    List<JwtSigningKey> findByRetireAtAfterOrderByCreatedAtDesc(Instant now);
+
+    @Modifying
+    @Transactional
+    @Query("delete from JwtSigningKey k where k.retireAt < :now")
+    int deleteRetired(@Param("now") Instant now);
+}
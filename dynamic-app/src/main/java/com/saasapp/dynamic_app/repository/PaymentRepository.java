@@ -1,14 +1,23 @@
 package com.saasapp.dynamic_app.repository;
 
+import com.saasapp.dynamic_app.dto.PaymentReconciliationRow;
+import com.saasapp.dynamic_app.dto.PaymentView;
 import com.saasapp.dynamic_app.entity.PaymentEntity;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.Optional;
 import java.util.List;
 
 @Repository
-public interface PaymentRepository extends JpaRepository<PaymentEntity, Long> {
+public interface PaymentRepository extends JpaRepository<PaymentEntity, Long>, PaymentRepositoryCustom {
     Optional<PaymentEntity> findByRazorpayOrderId(String razorpayOrderId);
 
     Optional<PaymentEntity> findByRazorpayPaymentId(String razorpayPaymentId);
@@ -18,5 +27,96 @@ public interface PaymentRepository extends JpaRepository<PaymentEntity, Long> {
     Optional<PaymentEntity> findByUserIdAndRazorpayOrderId(String userId, String razorpayOrderId);
 
     List<PaymentEntity> findByUserIdOrderByCreatedAtDesc(String userId);
+
+    // Read-only projections: select just the PaymentResponse columns, no entity hydration
+    Optional<PaymentView> findViewByRazorpayOrderId(String razorpayOrderId);
+
+    Optional<PaymentView> findViewByRazorpayPaymentId(String razorpayPaymentId);
+
+    Optional<PaymentView> findViewById(Long id);
+
+    /**
+     * Keyset page (by id) of payments in the given statuses created in [from, to)
+     */
+    @Query("select p.id as id, p.razorpayOrderId as razorpayOrderId, p.status as status from PaymentEntity p " +
+            "where p.status in :statuses and p.createdAt >= :from and p.createdAt < :to and p.id > :afterId " +
+            "order by p.id")
+    List<PaymentReconciliationRow> findReconciliationPage(@Param("statuses") Collection<PaymentEntity.PaymentStatus> statuses,
+                                                          @Param("from") Instant from,
+                                                          @Param("to") Instant to,
+                                                          @Param("afterId") Long afterId,
+                                                          Limit limit);
+
+    @Modifying
+    @Transactional
+    @Query("update PaymentEntity p set p.paymentMethod = :paymentMethod, p.updatedAt = :now " +
+            "where p.razorpayPaymentId = :razorpayPaymentId")
+    int updatePaymentMethod(@Param("razorpayPaymentId") String razorpayPaymentId,
+                            @Param("paymentMethod") String paymentMethod,
+                            @Param("now") Instant now);
+
+    /**
+     * Capture after a verified checkout signature; returns 0 if the current status does not allow it
+     */
+    @Modifying
+    @Transactional
+    @Query("update PaymentEntity p set p.status = com.saasapp.dynamic_app.entity.PaymentEntity.PaymentStatus.CAPTURED, " +
+            "p.razorpayPaymentId = :razorpayPaymentId, p.razorpaySignature = :razorpaySignature, p.updatedAt = :now " +
+            "where p.razorpayOrderId = :razorpayOrderId and p.status in :fromStatuses")
+    int markCaptured(@Param("razorpayOrderId") String razorpayOrderId,
+                     @Param("razorpayPaymentId") String razorpayPaymentId,
+                     @Param("razorpaySignature") String razorpaySignature,
+                     @Param("fromStatuses") Collection<PaymentEntity.PaymentStatus> fromStatuses,
+                     @Param("now") Instant now);
+
+    @Modifying
+    @Transactional
+    @Query("update PaymentEntity p set p.status = com.saasapp.dynamic_app.entity.PaymentEntity.PaymentStatus.FAILED, " +
+            "p.errorMessage = :errorMessage, p.updatedAt = :now " +
+            "where p.razorpayOrderId = :razorpayOrderId and p.status in :fromStatuses")
+    int markFailed(@Param("razorpayOrderId") String razorpayOrderId,
+                   @Param("errorMessage") String errorMessage,
+                   @Param("fromStatuses") Collection<PaymentEntity.PaymentStatus> fromStatuses,
+                   @Param("now") Instant now);
+
+    @Modifying
+    @Transactional
+    @Query("update PaymentEntity p set p.status = com.saasapp.dynamic_app.entity.PaymentEntity.PaymentStatus.REFUNDED, " +
+            "p.errorMessage = :errorMessage, p.updatedAt = :now " +
+            "where p.razorpayPaymentId = :razorpayPaymentId and p.status in :fromStatuses")
+    int markRefunded(@Param("razorpayPaymentId") String razorpayPaymentId,
+                     @Param("errorMessage") String errorMessage,
+                     @Param("fromStatuses") Collection<PaymentEntity.PaymentStatus> fromStatuses,
+                     @Param("now") Instant now);
+
+    /**
+     * Apply a gateway-reported status to an order, only if the current status allows the move.
+     * An AUTHORIZED/CAPTURED attempt replaces the stored payment id (a retry after a failed attempt
+     * succeeds with a new id); a FAILED attempt only fills it in when missing.
+     */
+    @Modifying
+    @Query("update PaymentEntity p set p.status = :status, " +
+            "p.razorpayPaymentId = case when :status = com.saasapp.dynamic_app.entity.PaymentEntity.PaymentStatus.FAILED " +
+            "then coalesce(p.razorpayPaymentId, :razorpayPaymentId) " +
+            "else coalesce(:razorpayPaymentId, p.razorpayPaymentId) end, " +
+            "p.paymentMethod = coalesce(:paymentMethod, p.paymentMethod), " +
+            "p.errorMessage = coalesce(:errorMessage, p.errorMessage), " +
+            "p.updatedAt = :now " +
+            "where p.razorpayOrderId = :razorpayOrderId and p.status in :fromStatuses")
+    int applyGatewayStatusByOrderId(@Param("razorpayOrderId") String razorpayOrderId,
+                                    @Param("razorpayPaymentId") String razorpayPaymentId,
+                                    @Param("status") PaymentEntity.PaymentStatus status,
+                                    @Param("fromStatuses") Collection<PaymentEntity.PaymentStatus> fromStatuses,
+                                    @Param("paymentMethod") String paymentMethod,
+                                    @Param("errorMessage") String errorMessage,
+                                    @Param("now") Instant now);
+
+    @Modifying
+    @Query("update PaymentEntity p set p.status = :status, p.updatedAt = :now " +
+            "where p.razorpayPaymentId = :razorpayPaymentId and p.status in :fromStatuses")
+    int applyGatewayStatusByPaymentId(@Param("razorpayPaymentId") String razorpayPaymentId,
+                                      @Param("status") PaymentEntity.PaymentStatus status,
+                                      @Param("fromStatuses") Collection<PaymentEntity.PaymentStatus> fromStatuses,
+                                      @Param("now") Instant now);
 }
 
@@ -0,0 +1,27 @@
+package com.saasapp.dynamic_app.repository;
+
+import com.saasapp.dynamic_app.dto.PaymentResponse;
+import com.saasapp.dynamic_app.entity.PaymentEntity;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface PaymentRepositoryCustom {
+
+    /**
+     * Keyset page of a user's payments, newest first, ordered by (createdAt, id)
+     *
+     * @param afterCreatedAt createdAt of the last row of the previous page, or null for the first page
+     * @param afterId        id of the last row of the previous page, or null for the first page
+     * @param status         optional status filter
+     * @param from           optional inclusive lower bound on createdAt
+     * @param to             optional exclusive upper bound on createdAt
+     */
+    List<PaymentResponse> findUserPaymentsPage(String userId,
+                                               Instant afterCreatedAt,
+                                               Long afterId,
+                                               PaymentEntity.PaymentStatus status,
+                                               Instant from,
+                                               Instant to,
+                                               int limit);
+}
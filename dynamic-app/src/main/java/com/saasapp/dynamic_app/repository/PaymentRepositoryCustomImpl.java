@@ -0,0 +1,91 @@
+package com.saasapp.dynamic_app.repository;
+
+import com.saasapp.dynamic_app.dto.PaymentResponse;
+import com.saasapp.dynamic_app.entity.PaymentEntity;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+public class PaymentRepositoryCustomImpl implements PaymentRepositoryCustom {
+
+    private static final String SELECT = "select p.id as id, p.userId as userId, p.razorpayOrderId as razorpayOrderId, " +
+            "p.razorpayPaymentId as razorpayPaymentId, p.amount as amount, p.currency as currency, " +
+            "p.description as description, p.status as status, p.paymentMethod as paymentMethod, " +
+            "p.customerEmail as customerEmail, p.customerPhone as customerPhone, p.customerName as customerName, " +
+            "p.errorMessage as errorMessage, p.createdAt as createdAt, p.updatedAt as updatedAt " +
+            "from PaymentEntity p where p.userId = :userId";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<PaymentResponse> findUserPaymentsPage(String userId,
+                                                      Instant afterCreatedAt,
+                                                      Long afterId,
+                                                      PaymentEntity.PaymentStatus status,
+                                                      Instant from,
+                                                      Instant to,
+                                                      int limit) {
+        // Only the predicates actually in use are added, so the (user_id, created_at) index drives every variant
+        StringBuilder jpql = new StringBuilder(SELECT);
+        if (status != null) {
+            jpql.append(" and p.status = :status");
+        }
+        if (from != null) {
+            jpql.append(" and p.createdAt >= :from");
+        }
+        if (to != null) {
+            jpql.append(" and p.createdAt < :to");
+        }
+        if (afterCreatedAt != null) {
+            jpql.append(" and (p.createdAt < :afterCreatedAt or (p.createdAt = :afterCreatedAt and p.id < :afterId))");
+        }
+        jpql.append(" order by p.createdAt desc, p.id desc");
+
+        TypedQuery<Tuple> query = entityManager.createQuery(jpql.toString(), Tuple.class)
+                .setParameter("userId", userId)
+                .setMaxResults(limit);
+        if (status != null) {
+            query.setParameter("status", status);
+        }
+        if (from != null) {
+            query.setParameter("from", from);
+        }
+        if (to != null) {
+            query.setParameter("to", to);
+        }
+        if (afterCreatedAt != null) {
+            query.setParameter("afterCreatedAt", afterCreatedAt);
+            query.setParameter("afterId", afterId);
+        }
+
+        List<Tuple> rows = query.getResultList();
+        List<PaymentResponse> page = new ArrayList<>(rows.size());
+        for (Tuple row : rows) {
+            page.add(PaymentResponse.builder()
+                    .id(row.get("id", Long.class))
+                    .userId(row.get("userId", String.class))
+                    .razorpayOrderId(row.get("razorpayOrderId", String.class))
+                    .razorpayPaymentId(row.get("razorpayPaymentId", String.class))
+                    .amount(row.get("amount", BigDecimal.class))
+                    .currency(row.get("currency", String.class))
+                    .description(row.get("description", String.class))
+                    .status(row.get("status", PaymentEntity.PaymentStatus.class).toString())
+                    .paymentMethod(row.get("paymentMethod", String.class))
+                    .customerEmail(row.get("customerEmail", String.class))
+                    .customerPhone(row.get("customerPhone", String.class))
+                    .customerName(row.get("customerName", String.class))
+                    .errorMessage(row.get("errorMessage", String.class))
+                    .createdAt(row.get("createdAt", Instant.class))
+                    .updatedAt(row.get("updatedAt", Instant.class))
+                    .build());
+        }
+        return page;
+    }
+}
@@ -0,0 +1,42 @@
+package com.saasapp.dynamic_app.repository;
+
+import com.saasapp.dynamic_app.entity.PaymentWebhookEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface PaymentWebhookEventRepository extends JpaRepository<PaymentWebhookEvent, String> {
+
+    /**
+     * Store the event unless it was already received; returns 0 for a redelivery
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO payment_webhook_events (event_id, event_type, payload, received_at) " +
+            "VALUES (:eventId, :eventType, :payload, :receivedAt) ON CONFLICT (event_id) DO NOTHING",
+            nativeQuery = true)
+    int insertIfAbsent(@Param("eventId") String eventId,
+                       @Param("eventType") String eventType,
+                       @Param("payload") String payload,
+                       @Param("receivedAt") Instant receivedAt);
+
+    List<PaymentWebhookEvent> findTop500ByProcessedAtIsNullAndAttemptsLessThanAndReceivedAtBeforeOrderByReceivedAtAsc(
+            int maxAttempts, Instant receivedBefore);
+
+    @Modifying
+    @Transactional
+    @Query("update PaymentWebhookEvent e set e.attempts = e.attempts + 1, e.lastError = :error where e.eventId = :eventId")
+    int recordFailure(@Param("eventId") String eventId, @Param("error") String error);
+
+    @Modifying
+    @Query("update PaymentWebhookEvent e set e.processedAt = :now where e.eventId in :eventIds")
+    int markProcessed(@Param("eventIds") Collection<String> eventIds, @Param("now") Instant now);
+}
@@ -0,0 +1,46 @@
+package com.saasapp.dynamic_app.repository;
+
+import com.saasapp.dynamic_app.entity.RefreshToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
+
+    List<RefreshToken> findByUserEmailAndRevokedFalse(String userEmail);
+
+    List<RefreshToken> findByRevokedTrueAndRevokedAtAfterAndExpiresAtAfter(Instant revokedSince, Instant now);
+
+    /**
+     * One-time-use guard: only the first caller flips an unused, unrevoked, unexpired token
+     */
+    @Modifying
+    @Transactional
+    @Query("update RefreshToken r set r.used = true, r.revokedAt = :now " +
+            "where r.tokenId = :tokenId and r.used = false and r.revoked = false and r.expiresAt > :now")
+    int markUsed(@Param("tokenId") String tokenId, @Param("now") Instant now);
+
+    @Modifying
+    @Transactional
+    @Query("update RefreshToken r set r.revoked = true, r.revokedAt = :now " +
+            "where r.sessionId = :sessionId and r.revoked = false")
+    int revokeSession(@Param("sessionId") String sessionId, @Param("now") Instant now);
+
+    @Modifying
+    @Transactional
+    @Query("update RefreshToken r set r.revoked = true, r.revokedAt = :now " +
+            "where r.userEmail = :userEmail and r.revoked = false")
+    int revokeAllForUser(@Param("userEmail") String userEmail, @Param("now") Instant now);
+
+    @Modifying
+    @Transactional
+    @Query("delete from RefreshToken r where r.expiresAt < :now")
+    int deleteExpired(@Param("now") Instant now);
+}
@@ -0,0 +1,126 @@
+package com.saasapp.dynamic_app.security;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * HMAC-SHA256 signer for gateway signatures (payment verification, webhooks).
+ * The key is prepared once and each thread reuses its own Mac and buffers, so
+ * verification does not allocate. Hex signatures are compared in constant time.
+ */
+public final class HmacSha256Signer {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int DIGEST_LENGTH = 32;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final SecretKeySpec key;
+    private final ThreadLocal<State> state;
+
+    public HmacSha256Signer(String secret) {
+        if (secret == null || secret.isEmpty()) {
+            throw new IllegalArgumentException("HMAC secret cannot be null or empty");
+        }
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        newMac(); // Fail fast on an unusable key
+        this.state = ThreadLocal.withInitial(() -> new State(newMac()));
+    }
+
+    /**
+     * Verify a hex signature over "first + separator + second", e.g. "orderId|paymentId"
+     */
+    public boolean verifyHex(String expectedHex, String first, char separator, String second) {
+        State current = state.get();
+        current.mac.reset();
+        update(current, first);
+        current.mac.update((byte) separator);
+        update(current, second);
+        return finishAndCompare(current, expectedHex);
+    }
+
+    /**
+     * Verify a hex signature over a raw payload such as a webhook body
+     */
+    public boolean verifyHex(String expectedHex, byte[] payload) {
+        State current = state.get();
+        current.mac.reset();
+        current.mac.update(payload);
+        return finishAndCompare(current, expectedHex);
+    }
+
+    /**
+     * Compute the raw signature of a payload
+     */
+    public byte[] sign(byte[] payload) {
+        Mac mac = state.get().mac;
+        mac.reset();
+        return mac.doFinal(payload);
+    }
+
+    private boolean finishAndCompare(State current, String expectedHex) {
+        try {
+            current.mac.doFinal(current.digest, 0);
+        } catch (ShortBufferException e) {
+            throw new IllegalStateException("HMAC digest buffer too small", e);
+        }
+
+        if (expectedHex == null || expectedHex.length() != DIGEST_LENGTH * 2) {
+            return false;
+        }
+
+        // Compare every character regardless of where the first mismatch is
+        int diff = 0;
+        for (int i = 0; i < DIGEST_LENGTH; i++) {
+            int value = current.digest[i] & 0xff;
+            diff |= HEX[value >>> 4] ^ expectedHex.charAt(i * 2);
+            diff |= HEX[value & 0x0f] ^ expectedHex.charAt(i * 2 + 1);
+        }
+        return diff == 0;
+    }
+
+    /**
+     * Feed a string to the Mac as UTF-8 without allocating for the common ASCII case
+     */
+    private static void update(State current, String value) {
+        int length = value.length();
+        byte[] scratch = current.scratch(length);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                current.mac.update(value.getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            scratch[i] = (byte) c;
+        }
+        current.mac.update(scratch, 0, length);
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to initialize " + ALGORITHM, e);
+        }
+    }
+
+    private static final class State {
+        private final Mac mac;
+        private final byte[] digest = new byte[DIGEST_LENGTH];
+        private byte[] scratch = new byte[128];
+
+        private State(Mac mac) {
+            this.mac = mac;
+        }
+
+        private byte[] scratch(int length) {
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            return scratch;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.saasapp.dynamic_app.security;
 
+import com.saasapp.dynamic_app.service.RefreshTokenService;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -8,14 +10,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.context.SecurityContextHolderStrategy;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
+import org.springframework.util.function.SingletonSupplier;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.function.Supplier;
 
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
@@ -27,28 +33,53 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     @Autowired
     private UserDetailsService userDetailsService;
 
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
+    private final SecurityContextHolderStrategy securityContextHolderStrategy = SecurityContextHolder.getContextHolderStrategy();
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
-        try {
-            String jwt = getJwtFromRequest(request);
+        String jwt = getJwtFromRequest(request);
+
+        if (jwt != null) {
+            // Verification and user lookup only happen if authorization or a controller asks for the context,
+            // so permitAll routes in SecurityConfig pay nothing for a token they never read
+            Supplier<SecurityContext> deferredContext = SingletonSupplier.of(() -> resolveSecurityContext(jwt, request));
+            securityContextHolderStrategy.setDeferredContext(deferredContext);
+        }
+
+        filterChain.doFilter(request, response);
+    }
 
-            if (jwt != null && tokenProvider.validateToken(jwt)) {
-                String username = tokenProvider.getUsernameFromToken(jwt);
+    private SecurityContext resolveSecurityContext(String jwt, HttpServletRequest request) {
+        SecurityContext context = securityContextHolderStrategy.createEmptyContext();
+        try {
+            Claims claims = tokenProvider.parseClaims(jwt);
 
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-                UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
-                        userDetails, null, userDetails.getAuthorities());
-                authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+            // Refresh tokens are only accepted by /api/auth/refresh-token
+            if (tokenProvider.isRefreshToken(claims)) {
+                throw new IllegalStateException("Refresh token presented as access token");
+            }
 
-                SecurityContextHolder.getContext().setAuthentication(authentication);
-                logger.debug("JWT token validated for user: {}", username);
+            if (refreshTokenService.isSessionRevoked(claims.get(JwtTokenProvider.CLAIM_SESSION_ID, String.class))) {
+                throw new IllegalStateException("Session has been revoked");
             }
+
+            String username = claims.getSubject();
+
+            UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+            UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                    userDetails, null, userDetails.getAuthorities());
+            authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+
+            context.setAuthentication(authentication);
+            logger.debug("JWT token validated for user: {}", username);
         } catch (Exception e) {
-            logger.error("Could not set user authentication in security context: {}", e.getMessage());
+            logger.debug("Could not set user authentication in security context: {}", e.getMessage());
         }
-
-        filterChain.doFilter(request, response);
+        return context;
     }
 
     private String getJwtFromRequest(HttpServletRequest request) {
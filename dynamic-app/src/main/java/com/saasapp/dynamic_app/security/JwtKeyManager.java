@@ -0,0 +1,221 @@
+package com.saasapp.dynamic_app.security;
+
+import com.saasapp.dynamic_app.entity.JwtSigningKey;
+import com.saasapp.dynamic_app.repository.JwtSigningKeyRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Manages the ES256 key ring used to sign JWTs.
+ * Keys are persisted so every instance signs and verifies with the same set. A new key is
+ * generated every rotation interval, published in the JWKS immediately, and only used for
+ * signing after the activation delay so downstream JWKS caches already know it.
+ */
+@Component
+public class JwtKeyManager {
+    private static final Logger logger = LoggerFactory.getLogger(JwtKeyManager.class);
+
+    public static final String ALGORITHM = "ES256";
+
+    // Minimum spacing between on-demand reloads triggered by an unknown kid
+    private static final long MIN_RELOAD_INTERVAL_SECONDS = 5;
+
+    private static final Base64.Encoder BASE64URL = Base64.getUrlEncoder().withoutPadding();
+
+    @Autowired
+    private JwtSigningKeyRepository keyRepository;
+
+    @Value("${jwt.keys.rotation-interval-ms:604800000}")
+    private long rotationIntervalMs;
+
+    @Value("${jwt.keys.activation-delay-ms:600000}")
+    private long activationDelayMs;
+
+    @Value("${jwt.refresh.expiration}")
+    private long refreshTokenExpirationMs;
+
+    private volatile KeyRing keyRing;
+
+    public SigningKey currentSigningKey() {
+        return keyRing().signingKey();
+    }
+
+    /**
+     * Verification key for a kid, or null if it is unknown or retired
+     */
+    public PublicKey findVerificationKey(String kid) {
+        KeyRing ring = keyRing();
+        PublicKey key = ring.verificationKeys().get(kid);
+        if (key == null && ring.loadedAt().plusSeconds(MIN_RELOAD_INTERVAL_SECONDS).isBefore(Instant.now())) {
+            // A peer may have rotated since our last refresh
+            key = reload().verificationKeys().get(kid);
+        }
+        return key;
+    }
+
+    public String getJwksJson() {
+        return keyRing().jwksJson();
+    }
+
+    public String getJwksEtag() {
+        return keyRing().etag();
+    }
+
+    /**
+     * Reload keys from the database, rotating and purging as needed
+     */
+    @Scheduled(fixedDelayString = "${jwt.keys.refresh-interval-ms:60000}")
+    public void maintain() {
+        try {
+            keyRepository.deleteRetired(Instant.now());
+            reload();
+        } catch (Exception e) {
+            logger.warn("JWT key maintenance failed: {}", e.getMessage());
+        }
+    }
+
+    private KeyRing keyRing() {
+        KeyRing current = keyRing;
+        return current != null ? current : reload();
+    }
+
+    private synchronized KeyRing reload() {
+        Instant now = Instant.now();
+        List<JwtSigningKey> keys = keyRepository.findByRetireAtAfterOrderByCreatedAtDesc(now);
+
+        if (keys.isEmpty() || keys.get(0).getCreatedAt().plusMillis(rotationIntervalMs).isBefore(now)) {
+            JwtSigningKey created = generateKey(now);
+            keyRepository.save(created);
+            keys = new ArrayList<>(keys);
+            keys.add(0, created);
+            logger.info("Generated new JWT signing key: {}", created.getKid());
+        }
+
+        KeyRing ring = buildKeyRing(keys, now);
+        keyRing = ring;
+        return ring;
+    }
+
+    private KeyRing buildKeyRing(List<JwtSigningKey> keys, Instant now) {
+        Map<String, PublicKey> verificationKeys = new HashMap<>();
+        StringBuilder jwks = new StringBuilder("{\"keys\":[");
+        SigningKey signingKey = null;
+
+        for (JwtSigningKey key : keys) {
+            ECPublicKey publicKey = (ECPublicKey) decodePublicKey(key.getPublicKey());
+            verificationKeys.put(key.getKid(), publicKey);
+
+            if (verificationKeys.size() > 1) {
+                jwks.append(',');
+            }
+            jwks.append(toJwk(key.getKid(), publicKey));
+
+            // Newest key that has been published for at least the activation delay
+            if (signingKey == null && !key.getCreatedAt().plusMillis(activationDelayMs).isAfter(now)) {
+                signingKey = new SigningKey(key.getKid(), decodePrivateKey(key.getPrivateKey()));
+            }
+        }
+        jwks.append("]}");
+
+        if (signingKey == null) {
+            // Nothing is old enough yet (first boot): sign with the newest key
+            JwtSigningKey newest = keys.get(0);
+            signingKey = new SigningKey(newest.getKid(), decodePrivateKey(newest.getPrivateKey()));
+        }
+
+        String jwksJson = jwks.toString();
+        return new KeyRing(signingKey, Map.copyOf(verificationKeys), jwksJson, "\"" + thumbprint(jwksJson) + "\"", now);
+    }
+
+    private JwtSigningKey generateKey(Instant now) {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+            generator.initialize(new ECGenParameterSpec("secp256r1"));
+            KeyPair keyPair = generator.generateKeyPair();
+            ECPublicKey publicKey = (ECPublicKey) keyPair.getPublic();
+
+            return JwtSigningKey.builder()
+                    .kid(thumbprint(String.format("{\"crv\":\"P-256\",\"kty\":\"EC\",\"x\":\"%s\",\"y\":\"%s\"}",
+                            coordinate(publicKey.getW().getAffineX()), coordinate(publicKey.getW().getAffineY()))))
+                    .algorithm(ALGORITHM)
+                    .publicKey(Base64.getEncoder().encodeToString(publicKey.getEncoded()))
+                    .privateKey(Base64.getEncoder().encodeToString(keyPair.getPrivate().getEncoded()))
+                    .createdAt(now)
+                    .retireAt(now.plusMillis(rotationIntervalMs + activationDelayMs + refreshTokenExpirationMs))
+                    .build();
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to generate JWT signing key", e);
+        }
+    }
+
+    private String toJwk(String kid, ECPublicKey publicKey) {
+        return String.format("{\"kty\":\"EC\",\"crv\":\"P-256\",\"use\":\"sig\",\"alg\":\"%s\",\"kid\":\"%s\",\"x\":\"%s\",\"y\":\"%s\"}",
+                ALGORITHM, kid, coordinate(publicKey.getW().getAffineX()), coordinate(publicKey.getW().getAffineY()));
+    }
+
+    /**
+     * Unsigned, fixed-length (32 byte) base64url encoding of a P-256 coordinate
+     */
+    private static String coordinate(BigInteger value) {
+        byte[] raw = value.toByteArray();
+        byte[] fixed = new byte[32];
+        int length = Math.min(raw.length, 32);
+        System.arraycopy(raw, raw.length - length, fixed, 32 - length, length);
+        return BASE64URL.encodeToString(fixed);
+    }
+
+    private static String thumbprint(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return BASE64URL.encodeToString(digest);
+        } catch (Exception e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static PublicKey decodePublicKey(String encoded) {
+        try {
+            return KeyFactory.getInstance("EC").generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(encoded)));
+        } catch (Exception e) {
+            throw new IllegalStateException("Invalid stored JWT public key", e);
+        }
+    }
+
+    private static PrivateKey decodePrivateKey(String encoded) {
+        try {
+            return KeyFactory.getInstance("EC").generatePrivate(new PKCS8EncodedKeySpec(Base64.getDecoder().decode(encoded)));
+        } catch (Exception e) {
+            throw new IllegalStateException("Invalid stored JWT private key", e);
+        }
+    }
+
+    public record SigningKey(String kid, PrivateKey privateKey) {
+    }
+
+    private record KeyRing(SigningKey signingKey, Map<String, PublicKey> verificationKeys, String jwksJson, String etag,
+                           Instant loadedAt) {
+    }
+}
@@ -1,17 +1,25 @@
 package com.saasapp.dynamic_app.security;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Header;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.ProtectedHeader;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.security.Key;
+import java.security.PublicKey;
+import java.time.Instant;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
@@ -20,6 +28,10 @@ import java.util.Map;
 public class JwtTokenProvider {
     private static final Logger logger = LoggerFactory.getLogger(JwtTokenProvider.class);
 
+    public static final String CLAIM_TYPE = "type";
+    public static final String CLAIM_SESSION_ID = "sid";
+    public static final String TOKEN_TYPE_REFRESH = "refresh";
+
     @Value("${jwt.secret}")
     private String jwtSecret;
 
@@ -29,8 +41,52 @@ public class JwtTokenProvider {
     @Value("${jwt.refresh.expiration}")
     private long refreshTokenExpirationMs;
 
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(jwtSecret.getBytes());
+    // Accept HS512 tokens issued before the switch to ES256 until they expire
+    @Value("${jwt.legacy-hmac.enabled:false}")
+    private boolean legacyHmacEnabled;
+
+    // ISO-8601 instant; defaults to startup plus one access token lifetime
+    @Value("${jwt.legacy-hmac.accept-until:}")
+    private String legacyHmacAcceptUntil;
+
+    @Autowired
+    private JwtKeyManager keyManager;
+
+    private SecretKey legacyVerificationKey;
+
+    private Instant legacyHmacCutoff;
+
+    private JwtParser parser;
+
+    @PostConstruct
+    public void init() {
+        legacyVerificationKey = Keys.hmacShaKeyFor(jwtSecret.getBytes());
+        if (legacyHmacEnabled) {
+            legacyHmacCutoff = legacyHmacAcceptUntil == null || legacyHmacAcceptUntil.isBlank()
+                    ? Instant.now().plusMillis(jwtExpirationMs)
+                    : Instant.parse(legacyHmacAcceptUntil.trim());
+            logger.warn("Accepting legacy HS512 tokens without a key id until {}", legacyHmacCutoff);
+        }
+        // Parser is immutable and thread-safe; keys are resolved per token by kid
+        parser = Jwts.parser()
+                .keyLocator(this::locateVerificationKey)
+                .build();
+    }
+
+    private Key locateVerificationKey(Header header) {
+        String kid = header instanceof ProtectedHeader protectedHeader ? protectedHeader.getKeyId() : null;
+        if (kid == null) {
+            if (legacyHmacEnabled && Instant.now().isBefore(legacyHmacCutoff)) {
+                return legacyVerificationKey;
+            }
+            throw new JwtException("Token has no key id");
+        }
+
+        PublicKey key = keyManager.findVerificationKey(kid);
+        if (key == null) {
+            throw new JwtException("Unknown signing key id: " + kid);
+        }
+        return key;
     }
 
     public String generateAccessToken(Authentication authentication) {
@@ -39,13 +95,22 @@ public class JwtTokenProvider {
     }
 
     public String generateAccessToken(String username) {
+        return generateAccessToken(username, null);
+    }
+
+    public String generateAccessToken(String username, String sessionId) {
         Map<String, Object> claims = new HashMap<>();
+        if (sessionId != null) {
+            claims.put(CLAIM_SESSION_ID, sessionId);
+        }
         return createToken(claims, username, jwtExpirationMs);
     }
 
-    public String generateRefreshToken(String username) {
+    public String generateRefreshToken(String username, String tokenId, String sessionId) {
         Map<String, Object> claims = new HashMap<>();
-        claims.put("type", "refresh");
+        claims.put(CLAIM_TYPE, TOKEN_TYPE_REFRESH);
+        claims.put(CLAIM_SESSION_ID, sessionId);
+        claims.put(Claims.ID, tokenId);
         return createToken(claims, username, refreshTokenExpirationMs);
     }
 
@@ -53,12 +118,15 @@ public class JwtTokenProvider {
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + expirationMs);
 
+        JwtKeyManager.SigningKey signingKey = keyManager.currentSigningKey();
+
         return Jwts.builder()
-                .setClaims(claims)
-                .setSubject(subject)
-                .setIssuedAt(now)
-                .setExpiration(expiryDate)
-                .signWith(getSigningKey(), SignatureAlgorithm.HS512)
+                .header().keyId(signingKey.kid()).and()
+                .claims(claims)
+                .subject(subject)
+                .issuedAt(now)
+                .expiration(expiryDate)
+                .signWith(signingKey.privateKey(), Jwts.SIG.ES256)
                 .compact();
     }
 
@@ -76,10 +144,7 @@ public class JwtTokenProvider {
 
     public boolean validateToken(String token) {
         try {
-            Jwts.parser()
-                    .verifyWith(getSigningKey())
-                    .build()
-                    .parseSignedClaims(token);
+            parser.parseSignedClaims(token);
             return true;
         } catch (Exception e) {
             logger.error("Token validation failed: {}", e.getMessage());
@@ -87,12 +152,21 @@ public class JwtTokenProvider {
         }
     }
 
+    /**
+     * Verify the token and return its claims
+     *
+     * @throws io.jsonwebtoken.JwtException if the token is invalid or expired
+     */
+    public Claims parseClaims(String token) {
+        return getAllClaimsFromToken(token);
+    }
+
+    public boolean isRefreshToken(Claims claims) {
+        return TOKEN_TYPE_REFRESH.equals(claims.get(CLAIM_TYPE, String.class));
+    }
+
     private Claims getAllClaimsFromToken(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        return parser.parseSignedClaims(token).getPayload();
     }
 
     public boolean isTokenExpired(String token) {
@@ -6,6 +6,7 @@ import com.saasapp.dynamic_app.entity.EmailVerificationOtp;
 import com.saasapp.dynamic_app.repository.UserRepository;
 import com.saasapp.dynamic_app.repository.EmailVerificationOtpRepository;
 import com.saasapp.dynamic_app.security.JwtTokenProvider;
+import io.jsonwebtoken.Claims;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,6 +15,7 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.core.Authentication;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.Cookie;
@@ -44,6 +46,15 @@ public class AuthService {
     @Autowired
     private EmailService emailService;
 
+    @Autowired
+    private EmailOutboxService emailOutboxService;
+
+    @Autowired
+    private LastLoginRecorder lastLoginRecorder;
+
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
     private String generateOtp() {
         Random random = new Random();
         int otp = 100000 + random.nextInt(900000);
@@ -155,11 +166,12 @@ public class AuthService {
             logger.info("User registered successfully with id: {}", savedUser.getId());
 
             // Generate tokens
-            String accessToken = tokenProvider.generateAccessToken(savedUser.getEmail());
-            String refreshToken = tokenProvider.generateRefreshToken(savedUser.getEmail());
+            String sessionId = refreshTokenService.newSessionId();
+            String accessToken = tokenProvider.generateAccessToken(savedUser.getEmail(), sessionId);
+            String refreshToken = refreshTokenService.issue(savedUser.getEmail(), sessionId);
 
-            // Send welcome email
-            emailService.sendWelcomeEmail(savedUser.getEmail(), savedUser.getFullName());
+            // Queued in the signup transaction; the outbox dispatcher sends it after commit
+            emailOutboxService.enqueueWelcomeEmail(savedUser.getEmail(), savedUser.getFullName());
 
             return SignupResponse.builder()
                     .id(savedUser.getId())
@@ -192,12 +204,12 @@ public class AuthService {
             User user = (User) authentication.getPrincipal();
 
             // Generate tokens using email (not authentication object)
-            String accessToken = tokenProvider.generateAccessToken(user.getEmail());
-            String refreshToken = tokenProvider.generateRefreshToken(user.getEmail());
+            String sessionId = refreshTokenService.newSessionId();
+            String accessToken = tokenProvider.generateAccessToken(user.getEmail(), sessionId);
+            String refreshToken = refreshTokenService.issue(user.getEmail(), sessionId);
 
-            // Update last login
-            user.setLastLogin(LocalDateTime.now());
-            userRepository.save(user);
+            // Update last login (buffered and flushed in batches)
+            lastLoginRecorder.record(user.getId(), LocalDateTime.now());
 
             logger.info("User logged in successfully: {}", request.getEmail());
 
@@ -221,46 +233,37 @@ public class AuthService {
         }
     }
 
-    public AuthResponse refreshToken(HttpServletRequest request) {
+    /**
+     * Validate the access token from cookie or Authorization header and issue a fresh access token
+     * for the same session. Refresh tokens and revoked sessions are rejected.
+     */
+    public AuthResponse validateToken(HttpServletRequest request) {
         try {
-            logger.debug("Processing token refresh from cookie");
-
-            // Extract token from cookie first
-            String token = null;
-            Cookie[] cookies = request.getCookies();
-
-            if (cookies != null && cookies.length > 0) {
-                for (Cookie cookie : cookies) {
-                    logger.debug("Found cookie: {}", cookie.getName());
-                    if ("authToken".equals(cookie.getName())) {
-                        token = cookie.getValue();
-                        logger.debug("Found authToken cookie");
-                        break;
-                    }
-                }
-            } else {
-                logger.debug("No cookies found in request");
-            }
-
-            // Fallback: Check Authorization header if no cookie found
-            if (token == null || token.isEmpty()) {
-                String authHeader = request.getHeader("Authorization");
-                if (authHeader != null && authHeader.startsWith("Bearer ")) {
-                    token = authHeader.substring(7); // Remove "Bearer " prefix
-                    logger.debug("Token found in Authorization header");
-                }
-            }
+            logger.debug("Processing token validation from cookie");
 
+            String token = resolveToken(request);
             if (token == null || token.isEmpty()) {
                 logger.error("No authentication token found in cookie or Authorization header");
                 throw new RuntimeException("No authentication token found in cookie or Authorization header");
             }
 
-            if (!tokenProvider.validateToken(token)) {
+            Claims claims;
+            try {
+                claims = tokenProvider.parseClaims(token);
+            } catch (Exception e) {
                 throw new RuntimeException("Invalid or expired token");
             }
 
-            String email = tokenProvider.getUsernameFromToken(token);
+            if (tokenProvider.isRefreshToken(claims)) {
+                throw new RuntimeException("Refresh tokens cannot be used for authentication");
+            }
+
+            String sessionId = claims.get(JwtTokenProvider.CLAIM_SESSION_ID, String.class);
+            if (refreshTokenService.isSessionRevoked(sessionId)) {
+                throw new RuntimeException("Session has been revoked");
+            }
+
+            String email = claims.getSubject();
             logger.debug("Extracted email from token: {}", email);
 
             if (email == null || email.trim().isEmpty()) {
@@ -275,9 +278,9 @@ public class AuthService {
                     });
 
             logger.debug("User found with ID: {}", user.getId());
-            String newAccessToken = tokenProvider.generateAccessToken(email);
+            String newAccessToken = tokenProvider.generateAccessToken(email, sessionId);
 
-            logger.info("Token refreshed for user: {}", email);
+            logger.info("Token validated for user: {}", email);
 
             return AuthResponse.builder()
                     .token(newAccessToken)
@@ -293,11 +296,80 @@ public class AuthService {
                     .build();
 
         } catch (Exception e) {
-            logger.error("Error refreshing token: {}", e.getMessage());
+            logger.error("Error validating token: {}", e.getMessage());
+            throw new RuntimeException("Token refresh failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Rotate a refresh token: the presented token is consumed and a new access/refresh pair is issued.
+     * Runs outside the service transaction so a reuse-triggered session revocation is not rolled back.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public AuthResponse refreshToken(RefreshTokenRequest request) {
+        try {
+            RefreshTokenService.Rotation rotation = refreshTokenService.rotate(request.getRefreshToken());
+            String newAccessToken = tokenProvider.generateAccessToken(rotation.email(), rotation.sessionId());
+
+            logger.info("Refresh token rotated for user: {}", rotation.email());
+
+            return AuthResponse.builder()
+                    .token(newAccessToken)
+                    .refreshToken(rotation.refreshToken())
+                    .expiresIn(86400L)
+                    .message("Token refreshed successfully")
+                    .build();
+
+        } catch (Exception e) {
+            logger.warn("Error rotating refresh token: {}", e.getMessage());
             throw new RuntimeException("Token refresh failed: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Revoke the current session, or every session of the user when allSessions is set
+     */
+    public void logout(HttpServletRequest request, boolean allSessions) {
+        String token = resolveToken(request);
+        if (token == null || token.isEmpty()) {
+            throw new RuntimeException("No authentication token found in cookie or Authorization header");
+        }
+
+        Claims claims = tokenProvider.parseClaims(token);
+        if (allSessions) {
+            refreshTokenService.revokeAllSessions(claims.getSubject());
+        } else {
+            String sessionId = claims.get(JwtTokenProvider.CLAIM_SESSION_ID, String.class);
+            if (sessionId == null) {
+                throw new RuntimeException("Token is not bound to a session");
+            }
+            refreshTokenService.revokeSession(sessionId);
+        }
+        logger.info("User logged out: {}", claims.getSubject());
+    }
+
+    /**
+     * Extract token from authToken cookie, falling back to the Authorization header
+     */
+    private String resolveToken(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if ("authToken".equals(cookie.getName()) && cookie.getValue() != null && !cookie.getValue().isEmpty()) {
+                    logger.debug("Found authToken cookie");
+                    return cookie.getValue();
+                }
+            }
+        }
+
+        String authHeader = request.getHeader("Authorization");
+        if (authHeader != null && authHeader.startsWith("Bearer ")) {
+            logger.debug("Token found in Authorization header");
+            return authHeader.substring(7);
+        }
+        return null;
+    }
+
     public User getUserById(Long id) {
         return userRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("User not found"));
@@ -0,0 +1,253 @@
+package com.saasapp.dynamic_app.service;
+
+import com.saasapp.dynamic_app.config.AsyncConfig;
+import com.saasapp.dynamic_app.config.EmailExecutorMetrics;
+import com.saasapp.dynamic_app.dto.PaymentEmailRequest;
+import com.saasapp.dynamic_app.dto.PaymentResponse;
+import com.saasapp.dynamic_app.entity.EmailOutboxMessage;
+import com.saasapp.dynamic_app.entity.EmailOutboxMessage.Status;
+import com.saasapp.dynamic_app.entity.EmailOutboxMessage.Type;
+import com.saasapp.dynamic_app.repository.EmailOutboxRepository;
+import com.saasapp.dynamic_app.repository.PaymentRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Transactional email outbox.
+ * Callers enqueue inside the transaction that makes the business change (signup, payment capture), so an
+ * email exists exactly when the change commits. The dispatcher claims due messages with SKIP LOCKED and a
+ * lease, so any number of instances can poll the same table, sends them on the email executor (never more
+ * than it has threads, so nothing waits in a queue while its lease runs), and retries failures with
+ * exponential backoff until they are marked DEAD.
+ */
+@Service
+public class EmailOutboxService {
+    private static final Logger logger = LoggerFactory.getLogger(EmailOutboxService.class);
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    // Claim due messages, plus SENDING ones whose dispatcher died before finishing
+    private static final String CLAIM_SQL =
+            "UPDATE email_outbox SET status = 'SENDING', attempts = attempts + 1, locked_until = ? " +
+            "WHERE id IN (SELECT id FROM email_outbox " +
+            "WHERE (status = 'PENDING' AND next_attempt_at <= ?) OR (status = 'SENDING' AND locked_until < ?) " +
+            "ORDER BY next_attempt_at LIMIT ? FOR UPDATE SKIP LOCKED) " +
+            "RETURNING id, type, recipient, recipient_name, reference, attempts";
+
+    @Autowired
+    private EmailOutboxRepository emailOutboxRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private EmailService emailService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    @Qualifier(AsyncConfig.EMAIL_EXECUTOR)
+    private ThreadPoolTaskExecutor emailExecutor;
+
+    @Autowired
+    private EmailExecutorMetrics emailExecutorMetrics;
+
+    @Value("${app.email.outbox.batch-size:50}")
+    private int batchSize;
+
+    @Value("${app.email.outbox.lease-seconds:120}")
+    private long leaseSeconds;
+
+    @Value("${app.email.outbox.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${app.email.outbox.initial-backoff-seconds:30}")
+    private long initialBackoffSeconds;
+
+    @Value("${app.email.outbox.max-backoff-seconds:3600}")
+    private long maxBackoffSeconds;
+
+    @Value("${app.email.outbox.retention-days:14}")
+    private int retentionDays;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile boolean stopping;
+
+    private record ClaimedMessage(Long id, Type type, String recipient, String recipientName, String reference, int attempts) {
+    }
+
+    /**
+     * Queue the welcome email for a new account; joins the caller's transaction
+     */
+    public void enqueueWelcomeEmail(String email, String fullName) {
+        emailOutboxRepository.enqueue("welcome:" + email, Type.WELCOME.name(), email, fullName, null, Instant.now());
+    }
+
+    /**
+     * Queue the receipt for a captured payment; joins the caller's transaction and is a no-op if already queued
+     */
+    public void enqueuePaymentReceipt(String razorpayOrderId) {
+        emailOutboxRepository.enqueue("receipt:" + razorpayOrderId, Type.PAYMENT_RECEIPT.name(), null, null,
+                razorpayOrderId, Instant.now());
+    }
+
+    /**
+     * Claim only as many messages as there are idle email threads and hand them off without waiting.
+     * Each claimed message starts sending immediately, so its lease covers a single send, and the
+     * scheduler thread never blocks on SMTP.
+     */
+    @Scheduled(fixedDelayString = "${app.email.outbox.poll-interval-ms:2000}")
+    public void dispatch() {
+        int capacity = Math.min(batchSize, emailExecutor.getMaxPoolSize() - inFlight.get());
+        if (capacity <= 0 || stopping) {
+            return;
+        }
+
+        for (ClaimedMessage message : claim(capacity)) {
+            inFlight.incrementAndGet();
+            try {
+                emailExecutor.execute(() -> drain(message));
+            } catch (RuntimeException e) {
+                // Lease expiry makes the message claimable again
+                inFlight.decrementAndGet();
+                logger.warn("Could not hand off outbox email {}: {}", message.id(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Send the message, then keep claiming one due message at a time so a busy outbox doesn't wait for the next poll
+     */
+    private void drain(ClaimedMessage first) {
+        try {
+            ClaimedMessage message = first;
+            while (message != null) {
+                deliver(message);
+                if (stopping) {
+                    return;
+                }
+                List<ClaimedMessage> next = claim(1);
+                message = next.isEmpty() ? null : next.get(0);
+            }
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        // Messages already handed off finish during the executor's drain; nothing new is claimed
+        stopping = true;
+    }
+
+    @Scheduled(cron = "${app.email.outbox.cleanup-cron:0 30 3 * * *}")
+    public void purgeSent() {
+        int deleted = emailOutboxRepository.deleteSentBefore(Instant.now().minus(Duration.ofDays(retentionDays)));
+        if (deleted > 0) {
+            logger.info("Purged {} sent outbox emails", deleted);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (Status status : new Status[]{Status.PENDING, Status.SENDING, Status.DEAD}) {
+            stats.put(status.name().toLowerCase(), emailOutboxRepository.countByStatus(status));
+        }
+        return stats;
+    }
+
+    private List<ClaimedMessage> claim(int limit) {
+        Instant now = Instant.now();
+        return jdbcTemplate.query(CLAIM_SQL,
+                (rs, rowNum) -> new ClaimedMessage(
+                        rs.getLong("id"),
+                        Type.valueOf(rs.getString("type")),
+                        rs.getString("recipient"),
+                        rs.getString("recipient_name"),
+                        rs.getString("reference"),
+                        rs.getInt("attempts")),
+                Timestamp.from(now.plusSeconds(leaseSeconds)),
+                Timestamp.from(now),
+                Timestamp.from(now),
+                limit);
+    }
+
+    private void deliver(ClaimedMessage message) {
+        try {
+            switch (message.type()) {
+                case WELCOME -> emailService.sendWelcomeEmail(message.recipient(), message.recipientName());
+                case PAYMENT_RECEIPT -> sendReceipt(message);
+            }
+            emailOutboxRepository.markSent(message.id(), Instant.now());
+        } catch (IllegalArgumentException e) {
+            // Missing payment or address: retrying won't help
+            emailExecutorMetrics.recordFailure();
+            logger.warn("Outbox email {} cannot be sent: {}", message.id(), e.getMessage());
+            emailOutboxRepository.markDead(message.id(), truncate(e.getMessage()));
+        } catch (Exception e) {
+            emailExecutorMetrics.recordFailure();
+            if (message.attempts() >= maxAttempts) {
+                logger.error("Outbox email {} failed after {} attempts, giving up: {}", message.id(), message.attempts(), e.getMessage());
+                emailOutboxRepository.markDead(message.id(), truncate(e.getMessage()));
+                return;
+            }
+            Instant nextAttemptAt = Instant.now().plusMillis(backoffMillis(message.attempts()));
+            logger.warn("Outbox email {} failed (attempt {}), retrying at {}: {}", message.id(), message.attempts(), nextAttemptAt, e.getMessage());
+            emailOutboxRepository.markRetry(message.id(), nextAttemptAt, truncate(e.getMessage()));
+        }
+    }
+
+    private void sendReceipt(ClaimedMessage message) {
+        PaymentResponse payment = paymentRepository.findViewByRazorpayOrderId(message.reference())
+                .map(PaymentResponse::fromView)
+                .orElseThrow(() -> new IllegalArgumentException("Payment not found for orderId: " + message.reference()));
+
+        PaymentEmailRequest request = PaymentEmailRequest.forReceipt(payment);
+        if (request.getEmail() == null) {
+            throw new IllegalArgumentException("No customer email for orderId: " + message.reference());
+        }
+        // Validation problems surface as IllegalArgumentException inside EmailSendingException
+        try {
+            emailService.sendPaymentReceiptEmail(request);
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof IllegalArgumentException invalid) {
+                throw invalid;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * initial * 2^(attempt-1), capped, with +/-20% jitter so retries from a burst don't line up
+     */
+    private long backoffMillis(int attempt) {
+        long base = Math.min(initialBackoffSeconds << Math.min(attempt - 1, 20), maxBackoffSeconds) * 1000;
+        return (long) (base * (0.8 + ThreadLocalRandom.current().nextDouble() * 0.4));
+    }
+
+    private static String truncate(String error) {
+        if (error == null) {
+            return null;
+        }
+        return error.length() <= MAX_ERROR_LENGTH ? error : error.substring(0, MAX_ERROR_LENGTH);
+    }
+}
@@ -0,0 +1,294 @@
+package com.saasapp.dynamic_app.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.saasapp.dynamic_app.entity.IdempotencyRecord;
+import com.saasapp.dynamic_app.repository.IdempotencyRecordRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Idempotency-Key support for endpoints that call the payment gateway.
+ * The first request for a key executes; repeats get the stored response replayed, and
+ * concurrent duplicates on this node wait for the in-flight execution instead of re-running it.
+ * Keys are claimed in the idempotency_keys table so duplicates landing on other nodes are caught too.
+ */
+@Service
+public class IdempotencyService {
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private static final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Value("${payment.idempotency.ttl-hours:24}")
+    private long ttlHours;
+
+    @Value("${payment.idempotency.lock-timeout-ms:60000}")
+    private long lockTimeoutMs;
+
+    @Value("${payment.idempotency.cache-size:10000}")
+    private int cacheSize;
+
+    private final Map<String, CompletableFuture<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+
+    // Access-ordered, so the least recently replayed key is evicted first
+    private final LinkedHashMap<String, StoredResponse> completed = new LinkedHashMap<>(256, 0.75f, true);
+
+    private record StoredResponse(String requestHash, int status, String body, Instant expiresAt) {
+    }
+
+    /**
+     * Run the action once per (scope, key); without a key the action simply runs
+     *
+     * @param fingerprint canonical form of the request parameters
+     */
+    public ResponseEntity<?> execute(String scope, String idempotencyKey, String fingerprint,
+                                     Supplier<ResponseEntity<?>> action) {
+        return execute(scope, idempotencyKey, fingerprint, action, response -> false);
+    }
+
+    /**
+     * As {@link #execute(String, String, String, Supplier)}, but a response matching {@code outcomeUnknown}
+     * (the gateway may or may not have applied the call) keeps the key in progress instead of releasing it.
+     * A retry is then held off until the lock goes stale, and the action must reconcile with the gateway
+     * before repeating the call.
+     */
+    public ResponseEntity<?> execute(String scope, String idempotencyKey, String fingerprint,
+                                     Supplier<ResponseEntity<?>> action,
+                                     Predicate<ResponseEntity<?>> outcomeUnknown) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return action.get();
+        }
+        if (idempotencyKey.length() > MAX_KEY_LENGTH) {
+            return error(HttpStatus.BAD_REQUEST, HEADER + " must be at most " + MAX_KEY_LENGTH + " characters");
+        }
+
+        String key = scope + ":" + idempotencyKey;
+        String requestHash = sha256Hex(fingerprint);
+
+        StoredResponse cached;
+        synchronized (completed) {
+            cached = completed.get(key);
+        }
+        if (cached != null && cached.expiresAt().isAfter(Instant.now())) {
+            return replay(cached, requestHash);
+        }
+
+        CompletableFuture<StoredResponse> ours = new CompletableFuture<>();
+        CompletableFuture<StoredResponse> running = inFlight.putIfAbsent(key, ours);
+        if (running != null) {
+            return awaitInFlight(key, running, requestHash);
+        }
+
+        try {
+            return executeAsOwner(key, requestHash, action, outcomeUnknown, ours);
+        } finally {
+            inFlight.remove(key, ours);
+        }
+    }
+
+    private ResponseEntity<?> executeAsOwner(String key, String requestHash, Supplier<ResponseEntity<?>> action,
+                                             Predicate<ResponseEntity<?>> outcomeUnknown,
+                                             CompletableFuture<StoredResponse> ours) {
+        Instant now = Instant.now();
+        Instant expiresAt = now.plusSeconds(ttlHours * 3600);
+
+        try {
+            if (idempotencyRecordRepository.claim(key, requestHash, now, expiresAt) == 0) {
+                Optional<ResponseEntity<?>> existing = resolveExisting(key, requestHash, now, ours);
+                if (existing.isPresent()) {
+                    return existing.get();
+                }
+            }
+        } catch (RuntimeException e) {
+            ours.completeExceptionally(e);
+            throw e;
+        }
+
+        ResponseEntity<?> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            idempotencyRecordRepository.release(key);
+            ours.completeExceptionally(e);
+            throw e;
+        }
+
+        StoredResponse stored = new StoredResponse(requestHash, response.getStatusCode().value(), toJson(response.getBody()), expiresAt);
+        if (outcomeUnknown.test(response)) {
+            // Leave the key in progress; the stale takeover lets a retry in once the lock times out
+            logger.warn("Outcome unknown for idempotency key {}, holding it until it can be reconciled", key);
+        } else if (response.getStatusCode().is5xxServerError()) {
+            // Server-side failures are not final; let the client retry with the same key
+            idempotencyRecordRepository.release(key);
+        } else {
+            idempotencyRecordRepository.complete(key, stored.status(), stored.body());
+            remember(key, stored);
+        }
+        ours.complete(stored);
+        return response;
+    }
+
+    /**
+     * The key already exists in the table; replay it, reject it, or take it over if its owner died
+     */
+    private Optional<ResponseEntity<?>> resolveExisting(String key, String requestHash, Instant now,
+                                                        CompletableFuture<StoredResponse> ours) {
+        IdempotencyRecord record = idempotencyRecordRepository.findById(key).orElse(null);
+        if (record == null) {
+            // Released between our claim and the lookup
+            if (idempotencyRecordRepository.claim(key, requestHash, now, now.plusSeconds(ttlHours * 3600)) == 1) {
+                return Optional.empty();
+            }
+            ours.complete(null);
+            return Optional.of(conflict());
+        }
+
+        if (record.getStatus() == IdempotencyRecord.Status.COMPLETED) {
+            StoredResponse stored = new StoredResponse(record.getRequestHash(), record.getResponseStatus(),
+                    record.getResponseBody(), record.getExpiresAt());
+            remember(key, stored);
+            ours.complete(stored);
+            return Optional.of(replay(stored, requestHash));
+        }
+
+        if (!record.getRequestHash().equals(requestHash)) {
+            ours.complete(null);
+            return Optional.of(mismatch());
+        }
+
+        if (idempotencyRecordRepository.takeOverStale(key, now.minusMillis(lockTimeoutMs), now) == 1) {
+            logger.warn("Taking over stale idempotency key {}", key);
+            return Optional.empty();
+        }
+
+        // Another node is executing this key right now
+        ours.complete(null);
+        return Optional.of(conflict());
+    }
+
+    private ResponseEntity<?> awaitInFlight(String key, CompletableFuture<StoredResponse> running, String requestHash) {
+        try {
+            StoredResponse stored = running.get(lockTimeoutMs, TimeUnit.MILLISECONDS);
+            return stored != null ? replay(stored, requestHash) : conflict();
+        } catch (TimeoutException e) {
+            return conflict();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return conflict();
+        } catch (Exception e) {
+            logger.debug("In-flight request for key {} failed: {}", key, e.getMessage());
+            return error(HttpStatus.INTERNAL_SERVER_ERROR, "Original request failed, retry with the same " + HEADER);
+        }
+    }
+
+    private ResponseEntity<?> replay(StoredResponse stored, String requestHash) {
+        if (!stored.requestHash().equals(requestHash)) {
+            return mismatch();
+        }
+        return ResponseEntity.status(stored.status())
+                .header(REPLAYED_HEADER, "true")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(stored.body());
+    }
+
+    private void remember(String key, StoredResponse stored) {
+        synchronized (completed) {
+            completed.put(key, stored);
+            var eldest = completed.entrySet().iterator();
+            while (completed.size() > cacheSize && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Drop expired keys from the table and the local cache
+     */
+    @Scheduled(cron = "${payment.idempotency.cleanup-cron:0 15 * * * *}")
+    public void purgeExpired() {
+        Instant now = Instant.now();
+        synchronized (completed) {
+            completed.values().removeIf(stored -> stored.expiresAt().isBefore(now));
+        }
+        int deleted = idempotencyRecordRepository.deleteExpired(now);
+        if (deleted > 0) {
+            logger.info("Purged {} expired idempotency keys", deleted);
+        }
+    }
+
+    /**
+     * Canonical form of request parameters, for use as the fingerprint of {@link #execute}
+     */
+    public static String fingerprint(Object... parts) {
+        return toJson(parts);
+    }
+
+    private static ResponseEntity<?> conflict() {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .header("Retry-After", "1")
+                .body(errorBody("A request with this " + HEADER + " is still being processed"));
+    }
+
+    private static ResponseEntity<?> mismatch() {
+        // 422 Unprocessable Content
+        return ResponseEntity.status(422).body(errorBody(HEADER + " was already used with different request parameters"));
+    }
+
+    private static ResponseEntity<?> error(HttpStatus status, String message) {
+        return ResponseEntity.status(status).body(errorBody(message));
+    }
+
+    private static Map<String, String> errorBody(String message) {
+        return Map.of("error", message, "timestamp", Instant.now().toString());
+    }
+
+    private static String toJson(Object body) {
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to serialize response for idempotency store", e);
+        }
+    }
+
+    private static String sha256Hex(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (Exception e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.saasapp.dynamic_app.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Buffers lastLogin updates in memory and writes them to the users table in batches.
+ * Repeated logins by the same user between flushes are coalesced into a single row update,
+ * so login requests never wait on a users row lock.
+ */
+@Component
+public class LastLoginRecorder {
+    private static final Logger logger = LoggerFactory.getLogger(LastLoginRecorder.class);
+
+    private static final String UPDATE_SQL =
+            "UPDATE users SET last_login = ? WHERE id = ? AND (last_login IS NULL OR last_login < ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final Map<Long, LocalDateTime> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Record a login; only the latest timestamp per user is kept until the next flush
+     */
+    public void record(Long userId, LocalDateTime loginTime) {
+        if (userId == null || loginTime == null) {
+            return;
+        }
+        pending.merge(userId, loginTime, (current, candidate) -> candidate.isAfter(current) ? candidate : current);
+    }
+
+    /**
+     * Flush buffered lastLogin values as one batched UPDATE
+     */
+    @Scheduled(fixedDelayString = "${auth.last-login.flush-interval-ms:5000}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> batch = new ArrayList<>();
+        for (Map.Entry<Long, LocalDateTime> entry : pending.entrySet()) {
+            // Only drain the value we read; a newer login recorded meanwhile stays for the next flush
+            if (pending.remove(entry.getKey(), entry.getValue())) {
+                Timestamp loginTime = Timestamp.valueOf(entry.getValue());
+                batch.add(new Object[]{loginTime, entry.getKey(), loginTime});
+            }
+        }
+
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, batch);
+            logger.debug("Flushed lastLogin for {} users", batch.size());
+        } catch (Exception e) {
+            logger.warn("Failed to flush lastLogin for {} users, re-queuing: {}", batch.size(), e.getMessage());
+            for (Object[] row : batch) {
+                record((Long) row[1], ((Timestamp) row[0]).toLocalDateTime());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        logger.info("Flushing buffered lastLogin updates before shutdown");
+        flush();
+    }
+}
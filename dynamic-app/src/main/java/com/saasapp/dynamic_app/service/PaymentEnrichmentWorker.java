@@ -0,0 +1,103 @@
+package com.saasapp.dynamic_app.service;
+
+import com.saasapp.dynamic_app.repository.PaymentRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fills gateway-only payment details (payment method) after verification has already responded.
+ * Lookups run with bounded concurrency and are retried with exponential backoff.
+ */
+@Component
+public class PaymentEnrichmentWorker {
+    private static final Logger logger = LoggerFactory.getLogger(PaymentEnrichmentWorker.class);
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Value("${payment.enrichment.concurrency:4}")
+    private int concurrency;
+
+    @Value("${payment.enrichment.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${payment.enrichment.initial-backoff-ms:2000}")
+    private long initialBackoffMs;
+
+    @Value("${payment.enrichment.max-pending:10000}")
+    private int maxPending;
+
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private ScheduledExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newScheduledThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "payment-enrichment-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queue a payment-method lookup for the given Razorpay payment
+     *
+     * @param razorpayPaymentId payment to patch
+     * @param methodLookup      gateway call returning the payment method
+     */
+    public void submit(String razorpayPaymentId, Callable<String> methodLookup) {
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            logger.warn("Enrichment backlog full, skipping payment method lookup for paymentId: {}", razorpayPaymentId);
+            return;
+        }
+        executor.execute(() -> attempt(razorpayPaymentId, methodLookup, 1));
+    }
+
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    private void attempt(String razorpayPaymentId, Callable<String> methodLookup, int attempt) {
+        try {
+            String method = methodLookup.call();
+            paymentRepository.updatePaymentMethod(razorpayPaymentId, method, Instant.now());
+            pending.decrementAndGet();
+            logger.debug("Payment method {} stored for paymentId: {}", method, razorpayPaymentId);
+        } catch (Exception e) {
+            if (attempt >= maxAttempts || executor.isShutdown()) {
+                pending.decrementAndGet();
+                logger.warn("Giving up on payment method lookup for paymentId: {} after {} attempts: {}",
+                        razorpayPaymentId, attempt, e.getMessage());
+                return;
+            }
+
+            long delayMs = initialBackoffMs << (attempt - 1);
+            logger.debug("Payment method lookup failed for paymentId: {} (attempt {}), retrying in {} ms",
+                    razorpayPaymentId, attempt, delayMs);
+            executor.schedule(() -> attempt(razorpayPaymentId, methodLookup, attempt + 1), delayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+}
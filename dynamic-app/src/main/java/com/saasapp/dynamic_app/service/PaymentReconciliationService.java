@@ -0,0 +1,291 @@
+package com.saasapp.dynamic_app.service;
+
+import com.saasapp.dynamic_app.dto.PaymentReconciliationRow;
+import com.saasapp.dynamic_app.entity.JobCheckpoint;
+import com.saasapp.dynamic_app.entity.PaymentEntity.PaymentStatus;
+import com.saasapp.dynamic_app.repository.JobCheckpointRepository;
+import com.saasapp.dynamic_app.repository.PaymentRepository;
+import com.saasapp.dynamic_app.service.PaymentSettlementSource.GatewayPayment;
+import com.saasapp.dynamic_app.service.ReconciliationPlanner.Correction;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Reconciles unsettled payments (PENDING, AUTHORIZED, FAILED) with the gateway's payment listing.
+ * The window since the last checkpoint is cut into time slices processed with bounded parallelism;
+ * each slice pages the gateway listing, walks local rows by keyset and applies corrections as
+ * batched conditional UPDATEs. The checkpoint only advances past slices that completed, in order,
+ * so a failed or interrupted run resumes where it stopped.
+ */
+@Service
+public class PaymentReconciliationService {
+    private static final Logger logger = LoggerFactory.getLogger(PaymentReconciliationService.class);
+
+    private static final String JOB_NAME = "payment-reconciliation";
+
+    private static final Set<PaymentStatus> UNSETTLED = EnumSet.of(PaymentStatus.PENDING, PaymentStatus.AUTHORIZED, PaymentStatus.FAILED);
+
+    @Autowired
+    private PaymentSettlementSource settlementSource;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private JobCheckpointRepository jobCheckpointRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EmailOutboxService emailOutboxService;
+
+    @Value("${payment.reconciliation.concurrency:4}")
+    private int concurrency;
+
+    @Value("${payment.reconciliation.slice-minutes:60}")
+    private long sliceMinutes;
+
+    @Value("${payment.reconciliation.lookback-hours:24}")
+    private long lookbackHours;
+
+    // Leave recent payments alone; checkout may still be in progress
+    @Value("${payment.reconciliation.settle-delay-minutes:15}")
+    private long settleDelayMinutes;
+
+    // Gateway attempts can be created a while after the local order
+    @Value("${payment.reconciliation.gateway-grace-minutes:30}")
+    private long gatewayGraceMinutes;
+
+    @Value("${payment.reconciliation.page-size:500}")
+    private int pageSize;
+
+    @Value("${payment.reconciliation.gateway-page-size:100}")
+    private int gatewayPageSize;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private ExecutorService executor;
+
+    private ExecutorService coordinator;
+
+    private record SliceResult(int scanned, int corrected, int unmatched) {
+    }
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "payment-reconciliation-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        coordinator = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "payment-reconciliation-run");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Scheduled(cron = "${payment.reconciliation.cron:0 */15 * * * *}")
+    public void reconcile() {
+        if (!running.compareAndSet(false, true)) {
+            logger.debug("Payment reconciliation already running, skipping");
+            return;
+        }
+        // The run waits on gateway-bound slices; keep it off the shared scheduler thread
+        try {
+            coordinator.execute(() -> {
+                try {
+                    reconcileSinceCheckpoint();
+                } catch (Exception e) {
+                    logger.error("Payment reconciliation failed: {}", e.getMessage(), e);
+                } finally {
+                    running.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            running.set(false);
+            throw e;
+        }
+    }
+
+    private void reconcileSinceCheckpoint() throws InterruptedException {
+        Instant now = Instant.now();
+        Instant end = now.minus(Duration.ofMinutes(settleDelayMinutes));
+        Instant start = jobCheckpointRepository.findById(JOB_NAME)
+                .map(JobCheckpoint::getWatermark)
+                .orElse(now.minus(Duration.ofHours(lookbackHours)));
+        if (!start.isBefore(end)) {
+            return;
+        }
+
+        List<Instant[]> slices = new ArrayList<>();
+        for (Instant sliceStart = start; sliceStart.isBefore(end); ) {
+            Instant sliceEnd = sliceStart.plus(Duration.ofMinutes(sliceMinutes));
+            if (sliceEnd.isAfter(end)) {
+                sliceEnd = end;
+            }
+            slices.add(new Instant[]{sliceStart, sliceEnd});
+            sliceStart = sliceEnd;
+        }
+
+        List<Future<SliceResult>> futures = new ArrayList<>(slices.size());
+        for (Instant[] slice : slices) {
+            futures.add(executor.submit(() -> reconcileSlice(slice[0], slice[1], now)));
+        }
+
+        int scanned = 0;
+        int corrected = 0;
+        int unmatched = 0;
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                SliceResult result = futures.get(i).get();
+                scanned += result.scanned();
+                corrected += result.corrected();
+                unmatched += result.unmatched();
+                saveCheckpoint(slices.get(i)[1]);
+            } catch (ExecutionException e) {
+                logger.error("Reconciliation slice {} - {} failed, will resume from there: {}",
+                        slices.get(i)[0], slices.get(i)[1], e.getCause().getMessage());
+                futures.subList(i + 1, futures.size()).forEach(future -> future.cancel(true));
+                break;
+            }
+        }
+
+        logger.info("Payment reconciliation {} - {}: scanned {}, corrected {}, not found at gateway {}",
+                start, end, scanned, corrected, unmatched);
+    }
+
+    private SliceResult reconcileSlice(Instant from, Instant to, Instant now) {
+        Instant gatewayTo = to.plus(Duration.ofMinutes(gatewayGraceMinutes));
+        Map<String, GatewayPayment> gatewayPayments = ReconciliationPlanner.collectGatewayPayments(
+                settlementSource, from, gatewayTo.isAfter(now) ? now : gatewayTo, gatewayPageSize);
+
+        int scanned = 0;
+        int corrected = 0;
+        int unmatched = 0;
+        long afterId = 0;
+        while (true) {
+            List<PaymentReconciliationRow> rows = paymentRepository.findReconciliationPage(
+                    UNSETTLED, from, to, afterId, Limit.of(pageSize));
+            if (rows.isEmpty()) {
+                break;
+            }
+
+            scanned += rows.size();
+            for (PaymentReconciliationRow row : rows) {
+                if (!gatewayPayments.containsKey(row.getRazorpayOrderId())) {
+                    unmatched++;
+                }
+            }
+            corrected += applyCorrections(ReconciliationPlanner.plan(rows, gatewayPayments));
+
+            afterId = rows.get(rows.size() - 1).getId();
+            if (rows.size() < pageSize) {
+                break;
+            }
+        }
+        return new SliceResult(scanned, corrected, unmatched);
+    }
+
+    /**
+     * Apply corrections as one JDBC batch per target status, in lifecycle order, in a single transaction
+     */
+    private int applyCorrections(List<Correction> corrections) {
+        if (corrections.isEmpty()) {
+            return 0;
+        }
+
+        Map<PaymentStatus, List<Object[]>> byTarget = new EnumMap<>(PaymentStatus.class);
+        Timestamp now = Timestamp.from(Instant.now());
+        for (Correction correction : corrections) {
+            byTarget.computeIfAbsent(correction.target(), target -> new ArrayList<>()).add(new Object[]{
+                    correction.target().name(),
+                    correction.paymentId(),
+                    correction.method(),
+                    correction.errorDescription(),
+                    now,
+                    correction.orderId()
+            });
+        }
+
+        Integer updated = transactionTemplate.execute(status -> {
+            int count = 0;
+            for (Map.Entry<PaymentStatus, List<Object[]>> entry : byTarget.entrySet()) {
+                int[] results = jdbcTemplate.batchUpdate(updateSql(entry.getKey()), entry.getValue());
+                for (int i = 0; i < results.length; i++) {
+                    count += Math.max(results[i], 0);
+                    if (results[i] > 0 && entry.getKey() == PaymentStatus.CAPTURED) {
+                        // Captures found by reconciliation get their receipt in the same transaction
+                        emailOutboxService.enqueuePaymentReceipt((String) entry.getValue().get(i)[5]);
+                    }
+                }
+            }
+            return count;
+        });
+        return updated != null ? updated : 0;
+    }
+
+    private static String updateSql(PaymentStatus target) {
+        String sources = PaymentStatus.sourcesOf(target).stream()
+                .map(source -> "'" + source.name() + "'")
+                .collect(Collectors.joining(", "));
+        // A successful attempt replaces the payment id left by an earlier failed attempt; a failure only fills it in
+        String paymentIdSql = target == PaymentStatus.FAILED
+                ? "razorpay_payment_id = COALESCE(razorpay_payment_id, ?), "
+                : "razorpay_payment_id = COALESCE(?, razorpay_payment_id), ";
+        return "UPDATE payments SET status = ?, " +
+                paymentIdSql +
+                "payment_method = COALESCE(?, payment_method), " +
+                "error_message = COALESCE(?, error_message), " +
+                "updated_at = ? " +
+                "WHERE razorpay_order_id = ? AND status IN (" + sources + ")";
+    }
+
+    private void saveCheckpoint(Instant watermark) {
+        jobCheckpointRepository.save(JobCheckpoint.builder()
+                .jobName(JOB_NAME)
+                .watermark(watermark)
+                .build());
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        coordinator.shutdownNow();
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+}
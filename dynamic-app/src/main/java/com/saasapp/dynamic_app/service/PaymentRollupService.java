@@ -0,0 +1,207 @@
+package com.saasapp.dynamic_app.service;
+
+import com.saasapp.dynamic_app.dto.PaymentAnalyticsBucket;
+import com.saasapp.dynamic_app.dto.PaymentAnalyticsResponse;
+import com.saasapp.dynamic_app.entity.JobCheckpoint;
+import com.saasapp.dynamic_app.repository.JobCheckpointRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Maintains payment_daily_rollups and serves payment analytics from it.
+ * A delta job finds payments changed since its watermark (updated_at index), and recomputes
+ * only the days those payments were created on. Dashboard reads never touch the payments table.
+ */
+@Service
+public class PaymentRollupService {
+    private static final Logger logger = LoggerFactory.getLogger(PaymentRollupService.class);
+
+    private static final String JOB_NAME = "payment-daily-rollups";
+
+    // API dimension name -> rollup column
+    private static final Map<String, String> DIMENSIONS = new LinkedHashMap<>();
+
+    static {
+        DIMENSIONS.put("day", "rollup_date");
+        DIMENSIONS.put("currency", "currency");
+        DIMENSIONS.put("method", "payment_method");
+        DIMENSIONS.put("status", "status");
+    }
+
+    private static final String DELETE_DAY_SQL = "DELETE FROM payment_daily_rollups WHERE rollup_date = ?";
+
+    private static final String INSERT_DAY_SQL =
+            "INSERT INTO payment_daily_rollups (rollup_date, currency, payment_method, status, payment_count, total_amount, updated_at) " +
+            "SELECT ?, currency, COALESCE(payment_method, 'unknown'), status, COUNT(*), SUM(amount), ? " +
+            "FROM payments WHERE created_at >= ? AND created_at < ? " +
+            "GROUP BY currency, COALESCE(payment_method, 'unknown'), status";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JobCheckpointRepository jobCheckpointRepository;
+
+    @Value("${payment.analytics.time-zone:UTC}")
+    private String timeZone;
+
+    // Writes committing slightly after their updated_at timestamp are still picked up
+    @Value("${payment.analytics.commit-lag-seconds:60}")
+    private long commitLagSeconds;
+
+    @Value("${payment.analytics.max-range-days:400}")
+    private long maxRangeDays;
+
+    private ZoneId zone;
+
+    @PostConstruct
+    public void init() {
+        zone = ZoneId.of(timeZone);
+    }
+
+    /**
+     * Recompute the rollup days touched by payments changed since the last run
+     */
+    @Scheduled(fixedDelayString = "${payment.analytics.refresh-interval-ms:60000}")
+    public void refreshRollups() {
+        try {
+            Instant since = jobCheckpointRepository.findById(JOB_NAME)
+                    .map(JobCheckpoint::getWatermark)
+                    .orElse(Instant.EPOCH);
+            Instant until = Instant.now().minusSeconds(commitLagSeconds);
+            if (!since.isBefore(until)) {
+                return;
+            }
+
+            SortedSet<LocalDate> days = new TreeSet<>();
+            jdbcTemplate.query("SELECT created_at FROM payments WHERE updated_at > ? AND updated_at <= ?",
+                    (RowCallbackHandler) rs -> days.add(rs.getTimestamp(1).toInstant().atZone(zone).toLocalDate()),
+                    Timestamp.from(since), Timestamp.from(until));
+
+            for (LocalDate day : days) {
+                recomputeDay(day);
+            }
+            jobCheckpointRepository.save(JobCheckpoint.builder()
+                    .jobName(JOB_NAME)
+                    .watermark(until)
+                    .build());
+
+            if (!days.isEmpty()) {
+                logger.debug("Recomputed payment rollups for {} day(s) up to {}", days.size(), until);
+            }
+        } catch (Exception e) {
+            logger.error("Failed to refresh payment rollups: {}", e.getMessage(), e);
+        }
+    }
+
+    private void recomputeDay(LocalDate day) {
+        Timestamp dayStart = Timestamp.from(day.atStartOfDay(zone).toInstant());
+        Timestamp dayEnd = Timestamp.from(day.plusDays(1).atStartOfDay(zone).toInstant());
+        Timestamp now = Timestamp.from(Instant.now());
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update(DELETE_DAY_SQL, Date.valueOf(day));
+            jdbcTemplate.update(INSERT_DAY_SQL, Date.valueOf(day), now, dayStart, dayEnd);
+        });
+    }
+
+    /**
+     * Aggregate rollups over [from, to] (inclusive days)
+     *
+     * @param groupBy  any of day, currency, method, status
+     * @param currency optional currency filter
+     * @param status   optional status filter
+     */
+    public PaymentAnalyticsResponse getAnalytics(LocalDate from, LocalDate to, List<String> groupBy,
+                                                 String currency, String status) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("to must not be before from");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= maxRangeDays) {
+            throw new IllegalArgumentException("Date range must be at most " + maxRangeDays + " days");
+        }
+        for (String dimension : groupBy) {
+            if (!DIMENSIONS.containsKey(dimension)) {
+                throw new IllegalArgumentException("Unsupported groupBy dimension: " + dimension + ", expected one of " + DIMENSIONS.keySet());
+            }
+        }
+
+        Instant asOf = jobCheckpointRepository.findById(JOB_NAME)
+                .map(JobCheckpoint::getWatermark)
+                .orElse(null);
+
+        return PaymentAnalyticsResponse.builder()
+                .from(from)
+                .to(to)
+                .asOf(asOf)
+                .groupBy(groupBy)
+                .buckets(aggregate(from, to, groupBy, currency, status))
+                .totalsByStatus(aggregate(from, to, List.of("status"), currency, status))
+                .build();
+    }
+
+    private List<PaymentAnalyticsBucket> aggregate(LocalDate from, LocalDate to, List<String> groupBy,
+                                                   String currency, String status) {
+        // Column names come from the DIMENSIONS whitelist only
+        List<String> columns = DIMENSIONS.entrySet().stream()
+                .filter(entry -> groupBy.contains(entry.getKey()))
+                .map(Map.Entry::getValue)
+                .collect(Collectors.toList());
+
+        StringBuilder sql = new StringBuilder("SELECT ");
+        for (String column : columns) {
+            sql.append(column).append(", ");
+        }
+        sql.append("SUM(payment_count) AS payment_count, COALESCE(SUM(total_amount), 0) AS total_amount ")
+                .append("FROM payment_daily_rollups WHERE rollup_date >= ? AND rollup_date <= ?");
+
+        List<Object> args = new ArrayList<>();
+        args.add(Date.valueOf(from));
+        args.add(Date.valueOf(to));
+        if (currency != null) {
+            sql.append(" AND currency = ?");
+            args.add(currency);
+        }
+        if (status != null) {
+            sql.append(" AND status = ?");
+            args.add(status);
+        }
+        if (!columns.isEmpty()) {
+            String dimensions = String.join(", ", columns);
+            sql.append(" GROUP BY ").append(dimensions).append(" ORDER BY ").append(dimensions);
+        }
+
+        return jdbcTemplate.query(sql.toString(), (rs, rowNum) -> PaymentAnalyticsBucket.builder()
+                .day(columns.contains("rollup_date") ? rs.getDate("rollup_date").toLocalDate() : null)
+                .currency(columns.contains("currency") ? rs.getString("currency") : null)
+                .paymentMethod(columns.contains("payment_method") ? rs.getString("payment_method") : null)
+                .status(columns.contains("status") ? rs.getString("status") : null)
+                .count(rs.getLong("payment_count"))
+                .totalAmount(rs.getBigDecimal("total_amount"))
+                .build(), args.toArray());
+    }
+}
@@ -2,27 +2,35 @@ package com.saasapp.dynamic_app.service;
 
 import com.razorpay.Order;
 import com.razorpay.Payment;
-import com.razorpay.RazorpayClient;
+import com.razorpay.Refund;
 import com.saasapp.dynamic_app.dto.CreateOrderResponse;
 import com.saasapp.dynamic_app.dto.CreatePaymentRequest;
+import com.saasapp.dynamic_app.dto.PaymentPageResponse;
 import com.saasapp.dynamic_app.dto.PaymentResponse;
 import com.saasapp.dynamic_app.dto.PaymentVerificationRequest;
+import com.saasapp.dynamic_app.dto.PaymentView;
 import com.saasapp.dynamic_app.entity.PaymentEntity;
+import com.saasapp.dynamic_app.entity.PaymentEntity.PaymentStatus;
+import com.saasapp.dynamic_app.exception.PaymentGatewayException;
 import com.saasapp.dynamic_app.repository.PaymentRepository;
+import com.saasapp.dynamic_app.security.HmacSha256Signer;
+import jakarta.annotation.PostConstruct;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.Base64;
 import java.util.HexFormat;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @Service
 public class PaymentService {
@@ -31,23 +39,35 @@ public class PaymentService {
     @Autowired
     private PaymentRepository paymentRepository;
 
+    @Autowired
+    private PaymentEnrichmentWorker paymentEnrichmentWorker;
+
+    @Autowired
+    private RazorpayGateway razorpayGateway;
+
+    @Autowired
+    private EmailOutboxService emailOutboxService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     @Value("${razorpay.key.id}")
     private String razorpayKeyId;
 
     @Value("${razorpay.key.secret}")
     private String razorpayKeySecret;
 
-    private RazorpayClient razorpayClient;
+    @Value("${payment.history.default-page-size:50}")
+    private int defaultPageSize;
 
-    @Autowired
-    public void initializeRazorpayClient() {
-        try {
-            razorpayClient = new RazorpayClient(razorpayKeyId, razorpayKeySecret);
-            logger.info("Razorpay client initialized successfully");
-        } catch (Exception e) {
-            logger.error("Failed to initialize Razorpay client: {}", e.getMessage());
-            throw new RuntimeException("Failed to initialize Razorpay client", e);
-        }
+    @Value("${payment.history.max-page-size:200}")
+    private int maxPageSize;
+
+    private HmacSha256Signer paymentSignatureVerifier;
+
+    @PostConstruct
+    public void initializeSignatureVerifier() {
+        paymentSignatureVerifier = new HmacSha256Signer(razorpayKeySecret);
     }
 
     /**
@@ -88,7 +108,7 @@ public class PaymentService {
             }
 
             // Create order with Razorpay
-            Order order = razorpayClient.orders.create(orderJson);
+            Order order = razorpayGateway.createOrder(orderJson);
             String orderId = order.get("id");
 
             logger.info("Order created successfully with orderId: {}", orderId);
@@ -101,7 +121,7 @@ public class PaymentService {
                     .currency(request.getCurrency() != null ? request.getCurrency() : "INR")
                     .description(request.getDescription())
                     .receipt(request.getReceipt() != null ? request.getReceipt() : generateReceipt(request.getUserId()))
-                    .status(PaymentEntity.PaymentStatus.PENDING)
+                    .status(PaymentStatus.PENDING)
                     .customerEmail(customerEmail)
                     .customerPhone(request.getCustomerPhone())
                     .customerName(request.getCustomerName())
@@ -119,6 +139,9 @@ public class PaymentService {
                     .message("Order created successfully. Complete payment on frontend.")
                     .build();
 
+        } catch (PaymentGatewayException e) {
+            logger.error("Payment gateway error creating order: {}", e.getMessage());
+            throw e;
         } catch (Exception e) {
             logger.error("Error creating payment order: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to create payment order: " + e.getMessage(), e);
@@ -132,58 +155,70 @@ public class PaymentService {
         try {
             logger.debug("Verifying payment - orderId: {}, paymentId: {}", request.getRazorpayOrderId(), request.getRazorpayPaymentId());
 
-            // Verify signature
-            String signature = verifyPaymentSignature(
-                    request.getRazorpayOrderId(),
-                    request.getRazorpayPaymentId(),
-                    request.getRazorpaySignature()
+            // Verify signature: HMAC-SHA256(orderId|paymentId) with the key secret
+            boolean signatureValid = paymentSignatureVerifier.verifyHex(
+                    request.getRazorpaySignature(),
+                    request.getRazorpayOrderId(), '|', request.getRazorpayPaymentId()
             );
 
-            if (!signature.equals(request.getRazorpaySignature())) {
+            if (!signatureValid) {
                 logger.warn("Signature verification failed for orderId: {}", request.getRazorpayOrderId());
                 throw new RuntimeException("Payment verification failed: Invalid signature");
             }
 
             logger.info("Signature verified successfully");
 
-            // Update payment record
-            Optional<PaymentEntity> paymentOpt = paymentRepository.findByRazorpayOrderId(request.getRazorpayOrderId());
-
-            if (paymentOpt.isEmpty()) {
-                logger.error("Payment record not found for orderId: {}", request.getRazorpayOrderId());
-                throw new RuntimeException("Payment record not found");
-            }
-
-            PaymentEntity payment = paymentOpt.get();
-            payment.setRazorpayPaymentId(request.getRazorpayPaymentId());
-            payment.setRazorpaySignature(request.getRazorpaySignature());
-            payment.setStatus(PaymentEntity.PaymentStatus.CAPTURED);
-
-            // Fetch payment details from Razorpay and update
-            try {
-                com.razorpay.Payment razorpayPayment = razorpayClient.payments.fetch(request.getRazorpayPaymentId());
-                payment.setPaymentMethod(razorpayPayment.get("method"));
-            } catch (Exception e) {
-                logger.warn("Could not fetch payment method from Razorpay: {}", e.getMessage());
+            // Conditional capture: only applies if the current status allows it, no load-modify-save race.
+            // The receipt is queued in the same transaction, so it exists exactly when the capture commits.
+            Integer captured = transactionTemplate.execute(status -> {
+                int rows = paymentRepository.markCaptured(
+                        request.getRazorpayOrderId(),
+                        request.getRazorpayPaymentId(),
+                        request.getRazorpaySignature(),
+                        PaymentStatus.sourcesOf(PaymentStatus.CAPTURED),
+                        Instant.now());
+                if (rows > 0) {
+                    emailOutboxService.enqueuePaymentReceipt(request.getRazorpayOrderId());
+                }
+                return rows;
+            });
+            int updated = captured != null ? captured : 0;
+
+            PaymentView payment = paymentRepository.findViewByRazorpayOrderId(request.getRazorpayOrderId())
+                    .orElseThrow(() -> {
+                        logger.error("Payment record not found for orderId: {}", request.getRazorpayOrderId());
+                        return new RuntimeException("Payment record not found");
+                    });
+
+            if (updated == 0) {
+                // A webhook or an earlier verify may already have captured this payment
+                boolean alreadyCaptured = payment.getStatus() == PaymentStatus.CAPTURED
+                        && request.getRazorpayPaymentId().equals(payment.getRazorpayPaymentId());
+                if (!alreadyCaptured) {
+                    throw new RuntimeException("Payment cannot be captured from status " + payment.getStatus());
+                }
+                logger.info("Payment already captured - paymentId: {}", request.getRazorpayPaymentId());
+                return PaymentResponse.fromView(payment);
             }
 
-            paymentRepository.save(payment);
             logger.info("Payment verified and updated successfully - paymentId: {}", request.getRazorpayPaymentId());
 
-            return PaymentResponse.fromEntity(payment);
+            // Payment method comes from the gateway; fetch it in the background instead of delaying the response
+            String razorpayPaymentId = request.getRazorpayPaymentId();
+            paymentEnrichmentWorker.submit(razorpayPaymentId, () -> {
+                Payment razorpayPayment = razorpayGateway.fetchPayment(razorpayPaymentId);
+                return razorpayPayment.get("method");
+            });
+
+            return PaymentResponse.fromView(payment);
 
         } catch (Exception e) {
             logger.error("Error verifying payment: {}", e.getMessage(), e);
 
-            // Update payment status to FAILED
+            // Mark FAILED only while the payment is still open; never overwrites a capture
             try {
-                Optional<PaymentEntity> paymentOpt = paymentRepository.findByRazorpayOrderId(request.getRazorpayOrderId());
-                if (paymentOpt.isPresent()) {
-                    PaymentEntity payment = paymentOpt.get();
-                    payment.setStatus(PaymentEntity.PaymentStatus.FAILED);
-                    payment.setErrorMessage(e.getMessage());
-                    paymentRepository.save(payment);
-                }
+                paymentRepository.markFailed(request.getRazorpayOrderId(), e.getMessage(),
+                        PaymentStatus.sourcesOf(PaymentStatus.FAILED), Instant.now());
             } catch (Exception saveError) {
                 logger.error("Failed to update payment status to FAILED: {}", saveError.getMessage());
             }
@@ -192,31 +227,20 @@ public class PaymentService {
         }
     }
 
-    /**
-     * Verify payment signature using HMAC-SHA256
-     */
-    private String verifyPaymentSignature(String orderId, String paymentId, String signature) throws Exception {
-        String data = orderId + "|" + paymentId;
-        Mac mac = Mac.getInstance("HmacSHA256");
-        mac.init(new SecretKeySpec(razorpayKeySecret.getBytes(), "HmacSHA256"));
-        byte[] hashBytes = mac.doFinal(data.getBytes());
-        return HexFormat.of().formatHex(hashBytes);
-    }
-
     /**
      * Get payment details by order ID
      */
     public PaymentResponse getPaymentByOrderId(String orderId) {
         try {
             logger.debug("Fetching payment details for orderId: {}", orderId);
-            Optional<PaymentEntity> payment = paymentRepository.findByRazorpayOrderId(orderId);
+            Optional<PaymentView> payment = paymentRepository.findViewByRazorpayOrderId(orderId);
 
             if (payment.isEmpty()) {
                 logger.warn("Payment not found for orderId: {}", orderId);
                 throw new RuntimeException("Payment not found");
             }
 
-            return PaymentResponse.fromEntity(payment.get());
+            return PaymentResponse.fromView(payment.get());
         } catch (Exception e) {
             logger.error("Error fetching payment: {}", e.getMessage());
             throw new RuntimeException("Failed to fetch payment: " + e.getMessage(), e);
@@ -229,14 +253,14 @@ public class PaymentService {
     public PaymentResponse getPaymentByPaymentId(String paymentId) {
         try {
             logger.debug("Fetching payment details for paymentId: {}", paymentId);
-            Optional<PaymentEntity> payment = paymentRepository.findByRazorpayPaymentId(paymentId);
+            Optional<PaymentView> payment = paymentRepository.findViewByRazorpayPaymentId(paymentId);
 
             if (payment.isEmpty()) {
                 logger.warn("Payment not found for paymentId: {}", paymentId);
                 throw new RuntimeException("Payment not found");
             }
 
-            return PaymentResponse.fromEntity(payment.get());
+            return PaymentResponse.fromView(payment.get());
         } catch (Exception e) {
             logger.error("Error fetching payment: {}", e.getMessage());
             throw new RuntimeException("Failed to fetch payment: " + e.getMessage(), e);
@@ -244,35 +268,101 @@ public class PaymentService {
     }
 
     /**
-     * Get all payments for a user
+     * Get one page of a user's payments, newest first
+     *
+     * @param cursor nextCursor of the previous page, or null for the first page
+     * @param limit  requested page size, capped at payment.history.max-page-size
      */
-    public List<PaymentResponse> getUserPayments(String userId) {
+    public PaymentPageResponse getUserPayments(String userId, String cursor, Integer limit,
+                                               PaymentStatus status, Instant from, Instant to) {
+        int pageSize = limit == null || limit <= 0 ? defaultPageSize : Math.min(limit, maxPageSize);
+        PaymentCursor after = cursor == null || cursor.isEmpty() ? null : PaymentCursor.decode(cursor);
+
         try {
-            logger.debug("Fetching payments for userId: {}", userId);
-            List<PaymentEntity> payments = paymentRepository.findByUserIdOrderByCreatedAtDesc(userId);
-            return payments.stream()
-                    .map(PaymentResponse::fromEntity)
-                    .collect(Collectors.toList());
+            logger.debug("Fetching payments for userId: {}, pageSize: {}", userId, pageSize);
+            // One extra row tells us whether another page exists
+            List<PaymentResponse> items = paymentRepository.findUserPaymentsPage(
+                    userId,
+                    after != null ? after.createdAt() : null,
+                    after != null ? after.id() : null,
+                    status, from, to,
+                    pageSize + 1);
+
+            boolean hasMore = items.size() > pageSize;
+            if (hasMore) {
+                items = items.subList(0, pageSize);
+            }
+            String nextCursor = null;
+            if (hasMore) {
+                PaymentResponse last = items.get(items.size() - 1);
+                nextCursor = new PaymentCursor(last.getCreatedAt(), last.getId()).encode();
+            }
+
+            return PaymentPageResponse.builder()
+                    .items(items)
+                    .nextCursor(nextCursor)
+                    .hasMore(hasMore)
+                    .limit(pageSize)
+                    .build();
         } catch (Exception e) {
             logger.error("Error fetching user payments: {}", e.getMessage());
             throw new RuntimeException("Failed to fetch user payments: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Position of the last row of a page: (createdAt, id), serialized as base64url "epochSecond:nano:id"
+     */
+    private record PaymentCursor(Instant createdAt, Long id) {
+        String encode() {
+            String raw = createdAt.getEpochSecond() + ":" + createdAt.getNano() + ":" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static PaymentCursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                String[] parts = raw.split(":");
+                if (parts.length != 3) {
+                    throw new IllegalArgumentException("Invalid cursor");
+                }
+                Instant createdAt = Instant.ofEpochSecond(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+                return new PaymentCursor(createdAt, Long.parseLong(parts[2]));
+            } catch (IllegalArgumentException e) {
+                // Also covers NumberFormatException and bad base64
+                throw new IllegalArgumentException("Invalid cursor", e);
+            }
+        }
+    }
+
     /**
      * Refund a payment
      */
     public PaymentResponse refundPayment(String paymentId, Long refundAmount, String reason) {
+        return refundPayment(paymentId, refundAmount, reason, null);
+    }
+
+    /**
+     * Refund a payment, tagging the gateway refund with a receipt derived from the idempotency key.
+     * A refund already carrying that receipt is reused, so a retry after a timed-out call cannot refund twice.
+     */
+    public PaymentResponse refundPayment(String paymentId, Long refundAmount, String reason, String idempotencyKey) {
         try {
             logger.debug("Refunding payment - paymentId: {}, amount: {}", paymentId, refundAmount);
 
-            Optional<PaymentEntity> paymentOpt = paymentRepository.findByRazorpayPaymentId(paymentId);
+            Optional<PaymentView> paymentOpt = paymentRepository.findViewByRazorpayPaymentId(paymentId);
 
             if (paymentOpt.isEmpty()) {
                 logger.error("Payment not found for paymentId: {}", paymentId);
                 throw new RuntimeException("Payment not found");
             }
 
+            // Check before calling the gateway; the UPDATE below re-checks atomically
+            PaymentStatus currentStatus = paymentOpt.get().getStatus();
+            if (!currentStatus.canTransitionTo(PaymentStatus.REFUNDED)) {
+                throw new RuntimeException("Payment cannot be refunded from status " + currentStatus);
+            }
+
             JSONObject refundJson = new JSONObject();
             if (refundAmount != null) {
                 refundJson.put("amount", refundAmount); // Amount in paise
@@ -281,23 +371,61 @@ public class PaymentService {
                 refundJson.put("notes", reason);
             }
 
-            razorpayClient.payments.refund(paymentId, refundJson);
-            logger.info("Refund initiated for paymentId: {}", paymentId);
+            String receipt = idempotencyKey != null ? refundReceipt(idempotencyKey) : null;
+            if (receipt != null && hasRefundWithReceipt(paymentId, receipt)) {
+                logger.info("Refund {} already exists for paymentId: {}, recording it", receipt, paymentId);
+            } else {
+                if (receipt != null) {
+                    refundJson.put("receipt", receipt);
+                }
+                razorpayGateway.refund(paymentId, refundJson);
+                logger.info("Refund initiated for paymentId: {}", paymentId);
+            }
 
             // Update payment status
-            PaymentEntity payment = paymentOpt.get();
-            payment.setStatus(PaymentEntity.PaymentStatus.REFUNDED);
-            payment.setErrorMessage("Refund requested - Reason: " + (reason != null ? reason : "No reason provided"));
-            paymentRepository.save(payment);
+            int updated = paymentRepository.markRefunded(
+                    paymentId,
+                    "Refund requested - Reason: " + (reason != null ? reason : "No reason provided"),
+                    PaymentStatus.sourcesOf(PaymentStatus.REFUNDED),
+                    Instant.now());
+            if (updated == 0) {
+                logger.warn("Payment {} was no longer refundable when recording the refund", paymentId);
+            }
 
-            return PaymentResponse.fromEntity(payment);
+            return paymentRepository.findViewByRazorpayPaymentId(paymentId)
+                    .map(PaymentResponse::fromView)
+                    .orElseThrow(() -> new RuntimeException("Payment not found"));
 
+        } catch (PaymentGatewayException e) {
+            logger.error("Payment gateway error refunding paymentId {}: {}", paymentId, e.getMessage());
+            throw e;
         } catch (Exception e) {
             logger.error("Error refunding payment: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to refund payment: " + e.getMessage(), e);
         }
     }
 
+    private boolean hasRefundWithReceipt(String paymentId, String receipt) {
+        for (Refund refund : razorpayGateway.fetchRefunds(paymentId)) {
+            if (receipt.equals(refund.toJson().optString("receipt", null))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stable refund receipt for an idempotency key (max 40 characters for Razorpay)
+     */
+    private String refundReceipt(String idempotencyKey) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(idempotencyKey.getBytes(StandardCharsets.UTF_8));
+            return "RFD" + HexFormat.of().formatHex(digest, 0, 16);
+        } catch (Exception e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
     /**
      * Generate receipt for payment (max 40 characters for Razorpay)
      */
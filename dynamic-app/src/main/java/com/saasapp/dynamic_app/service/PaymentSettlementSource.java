@@ -0,0 +1,26 @@
+package com.saasapp.dynamic_app.service;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Gateway-side view of payments used by reconciliation.
+ * Implemented by {@link RazorpayGateway}; tests can supply an in-memory stub.
+ */
+public interface PaymentSettlementSource {
+
+    /**
+     * One page of gateway payments created in [from, to), oldest first
+     *
+     * @param count page size (the Razorpay API allows at most 100)
+     * @param skip  number of payments to skip
+     */
+    List<GatewayPayment> listPayments(Instant from, Instant to, int count, int skip);
+
+    /**
+     * A payment attempt as reported by the gateway; status is the raw gateway status
+     * (created, authorized, captured, refunded, failed)
+     */
+    record GatewayPayment(String paymentId, String orderId, String status, String method, String errorDescription) {
+    }
+}
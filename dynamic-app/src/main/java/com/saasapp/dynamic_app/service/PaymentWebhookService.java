@@ -0,0 +1,235 @@
+package com.saasapp.dynamic_app.service;
+
+import com.saasapp.dynamic_app.entity.PaymentEntity.PaymentStatus;
+import com.saasapp.dynamic_app.entity.PaymentWebhookEvent;
+import com.saasapp.dynamic_app.repository.PaymentRepository;
+import com.saasapp.dynamic_app.repository.PaymentWebhookEventRepository;
+import com.saasapp.dynamic_app.security.HmacSha256Signer;
+import jakarta.annotation.PostConstruct;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Razorpay webhook ingestion.
+ * Events are verified, stored once per event id and acknowledged immediately; a scheduled
+ * worker drains them from an in-memory queue and applies status changes in batched transactions.
+ * Stored events that were never applied (queue overflow, crash) are picked up by a sweep.
+ */
+@Service
+public class PaymentWebhookService {
+    private static final Logger logger = LoggerFactory.getLogger(PaymentWebhookService.class);
+
+    // Events younger than this are assumed to still be in the in-memory queue
+    private static final long SWEEP_GRACE_SECONDS = 60;
+
+    @Autowired
+    private PaymentWebhookEventRepository webhookEventRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EmailOutboxService emailOutboxService;
+
+    @Value("${razorpay.webhook.secret}")
+    private String webhookSecret;
+
+    @Value("${payment.webhook.batch-size:100}")
+    private int batchSize;
+
+    @Value("${payment.webhook.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${payment.webhook.max-attempts:5}")
+    private int maxAttempts;
+
+    private HmacSha256Signer webhookSigner;
+
+    private BlockingQueue<PaymentWebhookEvent> queue;
+
+    @PostConstruct
+    public void init() {
+        webhookSigner = new HmacSha256Signer(webhookSecret);
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+    }
+
+    /**
+     * Verify and record a webhook delivery
+     *
+     * @return false if the event was already received
+     * @throws IllegalArgumentException if the signature is invalid
+     */
+    public boolean accept(byte[] body, String signature, String eventId) {
+        if (!webhookSigner.verifyHex(signature, body)) {
+            throw new IllegalArgumentException("Invalid webhook signature");
+        }
+
+        String payload = new String(body, StandardCharsets.UTF_8);
+        String eventType = new JSONObject(payload).optString("event", "unknown");
+        String id = eventId != null && !eventId.isEmpty() ? eventId : sha256Hex(body);
+
+        Instant now = Instant.now();
+        if (webhookEventRepository.insertIfAbsent(id, eventType, payload, now) == 0) {
+            logger.debug("Duplicate webhook event ignored: {}", id);
+            return false;
+        }
+
+        PaymentWebhookEvent event = PaymentWebhookEvent.builder()
+                .eventId(id)
+                .eventType(eventType)
+                .payload(payload)
+                .receivedAt(now)
+                .build();
+        if (!queue.offer(event)) {
+            logger.warn("Webhook queue full, event {} will be applied by the sweep", id);
+        }
+        return true;
+    }
+
+    @Scheduled(fixedDelayString = "${payment.webhook.drain-interval-ms:200}")
+    public void drainQueue() {
+        List<PaymentWebhookEvent> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            applyBatch(batch);
+            batch.clear();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${payment.webhook.sweep-interval-ms:60000}")
+    public void sweepUnprocessed() {
+        List<PaymentWebhookEvent> stale = webhookEventRepository
+                .findTop500ByProcessedAtIsNullAndAttemptsLessThanAndReceivedAtBeforeOrderByReceivedAtAsc(
+                        maxAttempts, Instant.now().minusSeconds(SWEEP_GRACE_SECONDS));
+        if (!stale.isEmpty()) {
+            logger.info("Re-applying {} unprocessed webhook events", stale.size());
+            for (int start = 0; start < stale.size(); start += batchSize) {
+                applyBatch(stale.subList(start, Math.min(start + batchSize, stale.size())));
+            }
+        }
+    }
+
+    private void applyBatch(List<PaymentWebhookEvent> events) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Instant now = Instant.now();
+                List<String> eventIds = new ArrayList<>(events.size());
+                for (PaymentWebhookEvent event : events) {
+                    apply(event, now);
+                    eventIds.add(event.getEventId());
+                }
+                webhookEventRepository.markProcessed(eventIds, now);
+            });
+            logger.debug("Applied {} webhook events", events.size());
+        } catch (Exception e) {
+            // One bad event rolls back the whole batch; apply them one by one so only that event is held back
+            logger.warn("Webhook batch of {} events failed, applying individually: {}", events.size(), e.getMessage());
+            events.forEach(this::applySingle);
+        }
+    }
+
+    private void applySingle(PaymentWebhookEvent event) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Instant now = Instant.now();
+                apply(event, now);
+                webhookEventRepository.markProcessed(List.of(event.getEventId()), now);
+            });
+        } catch (Exception e) {
+            // Counted so the sweep stops retrying it after max-attempts instead of blocking newer events
+            logger.error("Failed to apply webhook event {} ({}): {}", event.getEventId(), event.getEventType(), e.getMessage(), e);
+            try {
+                String error = e.getMessage() != null && e.getMessage().length() > 1000 ? e.getMessage().substring(0, 1000) : e.getMessage();
+                webhookEventRepository.recordFailure(event.getEventId(), error);
+            } catch (Exception recordError) {
+                logger.error("Failed to record webhook failure for {}: {}", event.getEventId(), recordError.getMessage());
+            }
+        }
+    }
+
+    private void apply(PaymentWebhookEvent event, Instant now) {
+        JSONObject payload;
+        try {
+            payload = new JSONObject(event.getPayload()).optJSONObject("payload");
+        } catch (Exception e) {
+            logger.warn("Skipping malformed webhook event {}: {}", event.getEventId(), e.getMessage());
+            return;
+        }
+        if (payload == null) {
+            return;
+        }
+
+        switch (event.getEventType()) {
+            case "payment.authorized" -> applyPaymentEvent(payload, PaymentStatus.AUTHORIZED, now);
+            case "payment.captured", "order.paid" -> applyPaymentEvent(payload, PaymentStatus.CAPTURED, now);
+            case "payment.failed" -> applyPaymentEvent(payload, PaymentStatus.FAILED, now);
+            case "refund.processed" -> applyRefundEvent(payload, now);
+            default -> logger.debug("Ignoring webhook event type: {}", event.getEventType());
+        }
+    }
+
+    private void applyPaymentEvent(JSONObject payload, PaymentStatus target, Instant now) {
+        JSONObject payment = entity(payload, "payment");
+        if (payment == null) {
+            return;
+        }
+
+        String orderId = payment.optString("order_id", null);
+        if (orderId == null) {
+            return;
+        }
+
+        int updated = paymentRepository.applyGatewayStatusByOrderId(
+                orderId,
+                payment.optString("id", null),
+                target,
+                PaymentStatus.sourcesOf(target),
+                payment.optString("method", null),
+                target == PaymentStatus.FAILED ? payment.optString("error_description", null) : null,
+                now);
+        if (updated > 0 && target == PaymentStatus.CAPTURED) {
+            // Same transaction as the status change
+            emailOutboxService.enqueuePaymentReceipt(orderId);
+        }
+        logger.debug("Webhook moved order {} to {}: {}", orderId, target, updated > 0);
+    }
+
+    private void applyRefundEvent(JSONObject payload, Instant now) {
+        JSONObject refund = entity(payload, "refund");
+        if (refund == null || refund.optString("payment_id", null) == null) {
+            return;
+        }
+        paymentRepository.applyGatewayStatusByPaymentId(
+                refund.getString("payment_id"), PaymentStatus.REFUNDED, PaymentStatus.sourcesOf(PaymentStatus.REFUNDED), now);
+    }
+
+    private static JSONObject entity(JSONObject payload, String name) {
+        JSONObject wrapper = payload.optJSONObject(name);
+        return wrapper != null ? wrapper.optJSONObject("entity") : null;
+    }
+
+    private static String sha256Hex(byte[] body) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (Exception e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
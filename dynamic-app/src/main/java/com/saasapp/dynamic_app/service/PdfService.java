@@ -3,7 +3,6 @@ package com.saasapp.dynamic_app.service;
 import com.google.zxing.BarcodeFormat;
 import com.google.zxing.MultiFormatWriter;
 import com.google.zxing.WriterException;
-import com.google.zxing.client.j2se.MatrixToImageWriter;
 import com.google.zxing.common.BitMatrix;
 import com.itextpdf.text.*;
 import com.itextpdf.text.pdf.PdfPCell;
@@ -21,38 +20,70 @@ import java.time.format.DateTimeFormatter;
 @Slf4j
 public class PdfService {
 
+    // Fonts, colors and static blocks are created once and only ever read by iText;
+    // each receipt only builds the elements that carry receipt data.
+    private static final Font HEADER_FONT = new Font(Font.FontFamily.HELVETICA, 22, Font.BOLD);
+    private static final Font COMPANY_FONT = new Font(Font.FontFamily.HELVETICA, 12, Font.BOLD);
+    private static final Font FOOTER_FONT = new Font(Font.FontFamily.HELVETICA, 11, Font.BOLD);
+    private static final Font FOOTER_DATE_FONT = new Font(Font.FontFamily.HELVETICA, 9);
+    private static final Font LABEL_FONT = new Font(Font.FontFamily.HELVETICA, 10, Font.BOLD);
+    private static final Font VALUE_FONT = new Font(Font.FontFamily.HELVETICA, 10);
+    private static final Font QR_LABEL_FONT = new Font(Font.FontFamily.HELVETICA, 11, Font.BOLD);
+    private static final Font QR_HINT_FONT = new Font(Font.FontFamily.HELVETICA, 8);
+    private static final Font DEFAULT_FONT = new Font();
+
+    private static final BaseColor LABEL_BACKGROUND = new BaseColor(220, 220, 220);
+    private static final BaseColor CELL_BORDER = new BaseColor(200, 200, 200);
+    private static final BaseColor DETAILS_BACKGROUND = new BaseColor(245, 245, 245);
+
+    private static final float[] HEADER_TABLE_WIDTHS = {70, 30};
+
+    private static final DateTimeFormatter FOOTER_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    // iText's DefaultSplitCharacter copies the whole chunk into a String at every candidate line break
+    // to look for dates, which made it the largest allocation per receipt. Receipt text only breaks at
+    // whitespace and at hyphens that are not inside a date.
+    private static final SplitCharacter SPLIT_CHARACTER = (start, current, end, cc, ck) -> {
+        char c = cc[current];
+        if (c <= ' ') {
+            return true;
+        }
+        return c == '-' && !(current > start && current + 1 < end
+                && Character.isDigit(cc[current - 1]) && Character.isDigit(cc[current + 1]));
+    };
+
+    private static final Paragraph HEADER = centered(paragraph("PAYMENT RECEIPT", HEADER_FONT), 10, 5);
+    private static final Paragraph SEPARATOR = centered(paragraph("_".repeat(50), DEFAULT_FONT), 0, 10);
+    private static final Paragraph COMPANY_DETAILS = centered(paragraph("DynamicApp Payment System", COMPANY_FONT), 0, 10);
+    private static final Paragraph BLANK_LINE = paragraph(" ", DEFAULT_FONT);
+    private static final Paragraph FOOTER_SEPARATOR = centered(paragraph("_".repeat(50), DEFAULT_FONT), 10, 10);
+    private static final Paragraph FOOTER = centered(paragraph("Thank you for your payment!", FOOTER_FONT), 0, 5);
+    private static final Paragraph QR_LABEL = centered(paragraph("QR Code", QR_LABEL_FONT), 0, 0);
+    private static final Paragraph QR_HINT = centered(paragraph("Scan for verification", QR_HINT_FONT), 0, 0);
+
+    // A receipt is ~5-10 KB; reuse one pre-sized buffer per thread instead of growing a new one each time
+    private static final int OUTPUT_BUFFER_SIZE = 16 * 1024;
+    private static final int OUTPUT_BUFFER_MAX_RETAINED = 256 * 1024;
+    private static final ThreadLocal<ReusableOutputStream> OUTPUT_BUFFER =
+            ThreadLocal.withInitial(() -> new ReusableOutputStream(OUTPUT_BUFFER_SIZE));
+
     public byte[] generatePaymentPdf(PaymentPdfDTO paymentDto) {
         try {
             Document document = new Document(PageSize.A4, 50, 50, 50, 50);
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            ReusableOutputStream outputStream = OUTPUT_BUFFER.get();
+            outputStream.reset();
             PdfWriter.getInstance(document, outputStream);
 
             document.open();
 
-            // Header with enhanced styling
-            Paragraph header = new Paragraph("PAYMENT RECEIPT", new Font(Font.FontFamily.HELVETICA, 22, Font.BOLD));
-            header.setAlignment(Element.ALIGN_CENTER);
-            header.setSpacingBefore(10);
-            header.setSpacingAfter(5);
-            document.add(header);
-
-            // Separator line
-            Paragraph separator = new Paragraph("_".repeat(50));
-            separator.setAlignment(Element.ALIGN_CENTER);
-            separator.setSpacingAfter(10);
-            document.add(separator);
-
-            // Company/System Details
-            Paragraph companyDetails = new Paragraph("DynamicApp Payment System", new Font(Font.FontFamily.HELVETICA, 12, Font.BOLD));
-            companyDetails.setAlignment(Element.ALIGN_CENTER);
-            companyDetails.setSpacingAfter(10);
-            document.add(companyDetails);
-
+            document.add(HEADER);
+            document.add(SEPARATOR);
+            document.add(COMPANY_DETAILS);
 
             // Create a table with QR code on the right
             PdfPTable headerTable = new PdfPTable(2);
             headerTable.setWidthPercentage(100);
-            headerTable.setWidths(new float[]{70, 30});
+            headerTable.setWidths(HEADER_TABLE_WIDTHS);
 
             // Left side - Payment Details Table
             PdfPTable detailsTable = new PdfPTable(2);
@@ -73,7 +104,7 @@ public class PdfService {
             detailsCell.setBorder(PdfPCell.RECTANGLE);
             detailsCell.setBorderColor(BaseColor.LIGHT_GRAY);
             detailsCell.setPadding(10);
-            detailsCell.setBackgroundColor(new BaseColor(245, 245, 245));
+            detailsCell.setBackgroundColor(DETAILS_BACKGROUND);
             headerTable.addCell(detailsCell);
 
             // Right side - QR Code (embedded directly in PDF only)
@@ -82,28 +113,22 @@ public class PdfService {
 
             document.add(headerTable);
 
-            document.add(new Paragraph(" "));
+            document.add(BLANK_LINE);
+            document.add(FOOTER_SEPARATOR);
+            document.add(FOOTER);
 
-            // Separator line
-            Paragraph footerSeparator = new Paragraph("_".repeat(50));
-            footerSeparator.setAlignment(Element.ALIGN_CENTER);
-            footerSeparator.setSpacingBefore(10);
-            footerSeparator.setSpacingAfter(10);
-            document.add(footerSeparator);
-
-            // Footer
-            Paragraph footer = new Paragraph("Thank you for your payment!", new Font(Font.FontFamily.HELVETICA, 11, Font.BOLD));
-            footer.setAlignment(Element.ALIGN_CENTER);
-            footer.setSpacingAfter(5);
-            document.add(footer);
-
-            Paragraph footerDate = new Paragraph("Generated on: " + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")), new Font(Font.FontFamily.HELVETICA, 9));
+            Paragraph footerDate = paragraph("Generated on: " + LocalDateTime.now().format(FOOTER_DATE_FORMAT), FOOTER_DATE_FONT);
             footerDate.setAlignment(Element.ALIGN_CENTER);
             document.add(footerDate);
 
             document.close();
 
-            return outputStream.toByteArray();
+            byte[] pdf = outputStream.toByteArray();
+            if (outputStream.capacity() > OUTPUT_BUFFER_MAX_RETAINED) {
+                // Don't pin an unusually large buffer to this thread
+                OUTPUT_BUFFER.remove();
+            }
+            return pdf;
         } catch (DocumentException e) {
             log.error("Error generating PDF", e);
             throw new RuntimeException("Failed to generate PDF", e);
@@ -120,10 +145,7 @@ public class PdfService {
             String qrData = buildQRCodeData(paymentDto);
             log.debug("QR data built: {}", qrData);
 
-            byte[] qrCodeImage = generateQRCodeImage(qrData, 150, 150);
-            log.debug("QR code image generated, size: {} bytes", qrCodeImage.length);
-
-            Image qrImage = Image.getInstance(qrCodeImage);
+            Image qrImage = generateQRCodeImage(qrData);
             qrImage.scaleToFit(120, 120);
             qrImage.setAlignment(Image.ALIGN_CENTER);
 
@@ -137,17 +159,13 @@ public class PdfService {
             qrImageCell.setBackgroundColor(BaseColor.WHITE);
 
             // Add "QR Code" label with scan instruction
-            Paragraph qrLabel = new Paragraph("QR Code", new Font(Font.FontFamily.HELVETICA, 11, Font.BOLD));
-            qrLabel.setAlignment(Element.ALIGN_CENTER);
-            PdfPCell labelCell = new PdfPCell(qrLabel);
+            PdfPCell labelCell = new PdfPCell(QR_LABEL);
             labelCell.setBorder(PdfPCell.NO_BORDER);
             labelCell.setHorizontalAlignment(Element.ALIGN_CENTER);
             labelCell.setPaddingBottom(5);
 
             // Add scan instruction
-            Paragraph scanHint = new Paragraph("Scan for verification", new Font(Font.FontFamily.HELVETICA, 8));
-            scanHint.setAlignment(Element.ALIGN_CENTER);
-            PdfPCell scanCell = new PdfPCell(scanHint);
+            PdfPCell scanCell = new PdfPCell(QR_HINT);
             scanCell.setBorder(PdfPCell.NO_BORDER);
             scanCell.setHorizontalAlignment(Element.ALIGN_CENTER);
             scanCell.setPaddingTop(5);
@@ -180,7 +198,7 @@ public class PdfService {
      * Create a failure cell when QR code generation fails
      */
     private PdfPCell createFailureCell(String message) {
-        PdfPCell emptyCell = new PdfPCell(new Paragraph(message));
+        PdfPCell emptyCell = new PdfPCell(paragraph(message, DEFAULT_FONT));
         emptyCell.setBorder(PdfPCell.RECTANGLE);
         emptyCell.setHorizontalAlignment(Element.ALIGN_CENTER);
         emptyCell.setVerticalAlignment(Element.ALIGN_MIDDLE);
@@ -189,29 +207,43 @@ public class PdfService {
 
     /**
      * Generate QR code image from payment data
-     * QR code is embedded only in PDF, not exposed separately
+     * The BitMatrix is packed straight into a raw 1-bit grayscale image (one pixel per module,
+     * no PNG encode/decode); iText flate-compresses it and the viewer scales it without smoothing.
      */
-    private byte[] generateQRCodeImage(String data, int width, int height) throws WriterException {
+    private Image generateQRCodeImage(String data) throws WriterException, BadElementException {
         try {
             if (data == null || data.isEmpty()) {
                 throw new IllegalArgumentException("QR data cannot be null or empty");
             }
 
-            log.debug("Generating QR code with data: {}, dimensions: {}x{}", data, width, height);
-
-            MultiFormatWriter writer = new MultiFormatWriter();
-            BitMatrix bitMatrix = writer.encode(data, BarcodeFormat.QR_CODE, width, height);
-
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            MatrixToImageWriter.writeToStream(bitMatrix, "PNG", outputStream);
+            // Size 0 lets ZXing return its natural size: one pixel per module plus the quiet zone
+            BitMatrix bitMatrix = new MultiFormatWriter().encode(data, BarcodeFormat.QR_CODE, 0, 0);
+            int width = bitMatrix.getWidth();
+            int height = bitMatrix.getHeight();
+            int rowBytes = (width + 7) / 8;
+
+            // DeviceGray 1 bpc: bit 0 = black module, bit 1 = white
+            byte[] pixels = new byte[rowBytes * height];
+            for (int y = 0; y < height; y++) {
+                int rowOffset = y * rowBytes;
+                for (int x = 0; x < width; x++) {
+                    if (!bitMatrix.get(x, y)) {
+                        pixels[rowOffset + (x >> 3)] |= (byte) (0x80 >>> (x & 7));
+                    }
+                }
+            }
 
-            byte[] imageBytes = outputStream.toByteArray();
-            log.debug("QR code image generated successfully, size: {} bytes", imageBytes.length);
+            Image image = Image.getInstance(width, height, 1, 1, pixels);
+            image.setInterpolation(false);
+            log.debug("QR code image generated, {}x{} modules", width, height);
 
-            return imageBytes;
+            return image;
         } catch (WriterException e) {
             log.error("WriterException: Error generating QR code image for PDF embedding", e);
             throw e;
+        } catch (BadElementException e) {
+            log.error("BadElementException: Error creating QR code image for PDF embedding", e);
+            throw e;
         } catch (Exception e) {
             log.error("Exception: Error generating QR code image for PDF embedding: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to generate QR code", e);
@@ -220,57 +252,59 @@ public class PdfService {
 
     /**
      * Build QR code data from payment information
-     * QR code contains scannable payment verification details with URL redirect
+     * Receipts for stored payments carry the short signed verification URL; anything else gets a
+     * compact text summary so the code stays small and fast to scan
      */
     private String buildQRCodeData(PaymentPdfDTO paymentDto) {
+        if (paymentDto.getVerificationUrl() != null) {
+            return paymentDto.getVerificationUrl();
+        }
+
         String transactionId = paymentDto.getTransactionId() != null ? paymentDto.getTransactionId() : "UNKNOWN";
-        String paymentId = paymentDto.getPaymentId() != null ? paymentDto.getPaymentId().toString() : "N/A";
         String amount = paymentDto.getAmount() != null ? paymentDto.getAmount().toString() : "0";
         String currency = paymentDto.getCurrency() != null ? paymentDto.getCurrency() : "INR";
-        String date = paymentDto.getPaymentDate() != null ? paymentDto.getPaymentDate() : "N/A";
-        String userName = paymentDto.getUserName() != null ? paymentDto.getUserName() : "UNKNOWN";
-        String email = paymentDto.getUserEmail() != null ? paymentDto.getUserEmail() : "N/A";
-        String status = paymentDto.getPaymentStatus() != null ? paymentDto.getPaymentStatus() : "PENDING";
-        String description = paymentDto.getDescription() != null ? paymentDto.getDescription() : "Payment Receipt";
-
-        // Build the complete URL with encoded query parameters
-        // The data parameter contains the payment info as key=value pairs
-        String dataParam = String.format(
-            "txn=%s&pid=%s&amt=%s&cur=%s&status=%s&date=%s&user=%s&email=%s&desc=%s",
-            transactionId, paymentId, amount, currency, status, date, userName, email, description
-        );
-
-        // URL encode the entire data parameter value
-        String encodedData = encodeURIComponent(dataParam);
-
-        // Use local IP address (172.20.10.2) for mobile device access
-        // For production, change to your production domain: https://yourdomain.com
-        return "http://172.20.10.2:8080/api/payment/verify-qr?data=" + encodedData;
-    }
-
-    /**
-     * URL encode helper method
-     */
-    private String encodeURIComponent(String component) {
-        try {
-            return java.net.URLEncoder.encode(component, java.nio.charset.StandardCharsets.UTF_8.toString());
-        } catch (Exception e) {
-            log.warn("Error encoding URI component: {}", e.getMessage());
-            return component;
-        }
+        return "PAYMENT|TXN:" + transactionId + "|AMT:" + amount + "|CUR:" + currency;
     }
 
     private void addTableRow(PdfPTable table, String label, String value) {
-        PdfPCell labelCell = new PdfPCell(new Phrase(label, new Font(Font.FontFamily.HELVETICA, 10, Font.BOLD)));
-        labelCell.setBackgroundColor(new BaseColor(220, 220, 220));
+        PdfPCell labelCell = new PdfPCell(new Phrase(chunk(label, LABEL_FONT)));
+        labelCell.setBackgroundColor(LABEL_BACKGROUND);
         labelCell.setPadding(6);
-        labelCell.setBorderColor(new BaseColor(200, 200, 200));
+        labelCell.setBorderColor(CELL_BORDER);
         table.addCell(labelCell);
 
-        PdfPCell valueCell = new PdfPCell(new Phrase(value != null ? value : "N/A", new Font(Font.FontFamily.HELVETICA, 10)));
+        PdfPCell valueCell = new PdfPCell(new Phrase(chunk(value != null ? value : "N/A", VALUE_FONT)));
         valueCell.setPadding(6);
         valueCell.setBackgroundColor(BaseColor.WHITE);
-        valueCell.setBorderColor(new BaseColor(200, 200, 200));
+        valueCell.setBorderColor(CELL_BORDER);
         table.addCell(valueCell);
     }
+
+    private static Chunk chunk(String text, Font font) {
+        return new Chunk(text, font).setSplitCharacter(SPLIT_CHARACTER);
+    }
+
+    private static Paragraph paragraph(String text, Font font) {
+        return new Paragraph(chunk(text, font));
+    }
+
+    private static Paragraph centered(Paragraph paragraph, float spacingBefore, float spacingAfter) {
+        paragraph.setAlignment(Element.ALIGN_CENTER);
+        paragraph.setSpacingBefore(spacingBefore);
+        paragraph.setSpacingAfter(spacingAfter);
+        return paragraph;
+    }
+
+    /**
+     * ByteArrayOutputStream that exposes its capacity so oversized buffers can be dropped
+     */
+    private static final class ReusableOutputStream extends ByteArrayOutputStream {
+        ReusableOutputStream(int size) {
+            super(size);
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+    }
 }
@@ -1,41 +1,262 @@
 package com.saasapp.dynamic_app.service;
 
 import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
 import com.google.zxing.MultiFormatWriter;
 import com.google.zxing.WriterException;
 import com.google.zxing.client.j2se.MatrixToImageWriter;
 import com.google.zxing.common.BitMatrix;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 @Slf4j
 public class QRCodeService {
 
+    private static final Map<EncodeHintType, Object> HINTS = new EnumMap<>(Map.of(
+            EncodeHintType.CHARACTER_SET, StandardCharsets.UTF_8.name()));
+
+    public enum Format {
+        PNG("image/png"),
+        SVG("image/svg+xml"),
+        MATRIX("text/plain");
+
+        private final String contentType;
+
+        Format(String contentType) {
+            this.contentType = contentType;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+    }
+
+    public record BatchItem(String data, int size, Format format) {
+    }
+
+    public record BatchResult(byte[] content, Format format, String error) {
+    }
+
+    private record CacheKey(String data, int width, int height, Format format) {
+    }
+
+    @Value("${qr.cache.max-entries:2000}")
+    private int maxEntries;
+
+    @Value("${qr.cache.max-bytes:33554432}")
+    private long maxBytes;
+
+    // 0 means one thread per core
+    @Value("${qr.batch.threads:0}")
+    private int batchThreads;
+
+    // Access-ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<CacheKey, byte[]> cache = new LinkedHashMap<>(256, 0.75f, true);
+
+    private long cachedBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private ExecutorService batchPool;
+
+    @PostConstruct
+    public void init() {
+        int threads = batchThreads > 0 ? batchThreads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        batchPool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "qr-batch-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
     public byte[] generateQRCode(String data, int width, int height) throws WriterException, IOException {
-        try {
-            MultiFormatWriter writer = new MultiFormatWriter();
-            BitMatrix bitMatrix = writer.encode(data, BarcodeFormat.QR_CODE, width, height);
+        return generate(data, width, height, Format.PNG);
+    }
 
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            MatrixToImageWriter.writeToStream(bitMatrix, "PNG", outputStream);
+    /**
+     * Render a QR code, serving repeated payload/size/format combinations from the LRU cache.
+     * PNG is rendered at the requested pixel size; SVG and MATRIX use one unit per module and
+     * SVG scales to the requested size through its viewBox.
+     */
+    public byte[] generate(String data, int width, int height, Format format) throws WriterException, IOException {
+        CacheKey key = new CacheKey(data, width, height, format);
+        byte[] cached = getCached(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        misses.incrementAndGet();
 
-            return outputStream.toByteArray();
+        try {
+            byte[] rendered = switch (format) {
+                case PNG -> toPng(new MultiFormatWriter().encode(data, BarcodeFormat.QR_CODE, width, height, HINTS));
+                case SVG -> toSvg(new MultiFormatWriter().encode(data, BarcodeFormat.QR_CODE, 0, 0, HINTS), width, height);
+                case MATRIX -> toMatrix(new MultiFormatWriter().encode(data, BarcodeFormat.QR_CODE, 0, 0, HINTS));
+            };
+            putCached(key, rendered);
+            return rendered;
         } catch (WriterException | IOException e) {
             log.error("Error generating QR code", e);
             throw e;
         }
     }
 
+    /**
+     * Render many QR codes in parallel; results keep the order of the input and failures are reported per item
+     */
+    public List<BatchResult> generateBatch(List<BatchItem> items) {
+        List<CompletableFuture<BatchResult>> futures = new ArrayList<>(items.size());
+        for (BatchItem item : items) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return new BatchResult(generate(item.data(), item.size(), item.size(), item.format()), item.format(), null);
+                } catch (WriterException | IllegalArgumentException e) {
+                    return new BatchResult(null, item.format(), "Invalid QR data: " + e.getMessage());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, batchPool));
+        }
+
+        List<BatchResult> results = new ArrayList<>(items.size());
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                results.add(futures.get(i).join());
+            } catch (CompletionException e) {
+                log.error("Error generating QR code in batch: {}", e.getCause().getMessage());
+                results.add(new BatchResult(null, items.get(i).format(), "QR generation failed"));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Payload for a payment QR code; identical payments always produce identical payloads
+     */
     public String buildPaymentQRCodeData(String transactionId, Double amount, String currency) {
-        return String.format("PAYMENT|TXN:%s|AMT:%s|CUR:%s|DATE:%s",
+        return String.format("PAYMENT|TXN:%s|AMT:%s|CUR:%s",
             transactionId,
-            amount,
-            currency,
-            System.currentTimeMillis());
+            amount != null ? BigDecimal.valueOf(amount).stripTrailingZeros().toPlainString() : "0",
+            currency);
     }
-}
 
+    public Map<String, Object> getCacheStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (cache) {
+            stats.put("entries", cache.size());
+            stats.put("bytes", cachedBytes);
+        }
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        return stats;
+    }
+
+    private byte[] getCached(CacheKey key) {
+        synchronized (cache) {
+            return cache.get(key);
+        }
+    }
+
+    private void putCached(CacheKey key, byte[] value) {
+        if (value.length > maxBytes) {
+            return;
+        }
+        synchronized (cache) {
+            byte[] previous = cache.put(key, value);
+            if (previous != null) {
+                cachedBytes -= previous.length;
+            }
+            cachedBytes += value.length;
+
+            var eldest = cache.entrySet().iterator();
+            while ((cache.size() > maxEntries || cachedBytes > maxBytes) && eldest.hasNext()) {
+                cachedBytes -= eldest.next().getValue().length;
+                eldest.remove();
+            }
+        }
+    }
+
+    private static byte[] toPng(BitMatrix bitMatrix) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        MatrixToImageWriter.writeToStream(bitMatrix, "PNG", outputStream);
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * One path with a horizontal run per row of dark modules; crispEdges keeps module borders sharp when scaled
+     */
+    private static byte[] toSvg(BitMatrix bitMatrix, int width, int height) {
+        int modulesWide = bitMatrix.getWidth();
+        int modulesHigh = bitMatrix.getHeight();
+        StringBuilder svg = new StringBuilder(modulesWide * modulesHigh);
+        svg.append("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"").append(width)
+                .append("\" height=\"").append(height)
+                .append("\" viewBox=\"0 0 ").append(modulesWide).append(' ').append(modulesHigh)
+                .append("\" shape-rendering=\"crispEdges\">")
+                .append("<rect width=\"100%\" height=\"100%\" fill=\"#fff\"/>")
+                .append("<path fill=\"#000\" d=\"");
+        for (int y = 0; y < modulesHigh; y++) {
+            int x = 0;
+            while (x < modulesWide) {
+                if (!bitMatrix.get(x, y)) {
+                    x++;
+                    continue;
+                }
+                int runStart = x;
+                while (x < modulesWide && bitMatrix.get(x, y)) {
+                    x++;
+                }
+                svg.append('M').append(runStart).append(' ').append(y)
+                        .append('h').append(x - runStart).append("v1h-").append(x - runStart).append('z');
+            }
+        }
+        svg.append("\"/></svg>");
+        return svg.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * One line per row of modules, '1' for dark and '0' for light, including the quiet zone
+     */
+    private static byte[] toMatrix(BitMatrix bitMatrix) {
+        int width = bitMatrix.getWidth();
+        int height = bitMatrix.getHeight();
+        byte[] matrix = new byte[(width + 1) * height];
+        int offset = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                matrix[offset++] = (byte) (bitMatrix.get(x, y) ? '1' : '0');
+            }
+            matrix[offset++] = '\n';
+        }
+        return matrix;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        batchPool.shutdownNow();
+    }
+}
@@ -0,0 +1,198 @@
+package com.saasapp.dynamic_app.service;
+
+import com.saasapp.dynamic_app.dto.PaymentView;
+import com.saasapp.dynamic_app.dto.QrVerificationResponse;
+import com.saasapp.dynamic_app.repository.PaymentRepository;
+import com.saasapp.dynamic_app.security.HmacSha256Signer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compact signed tokens for receipt QR codes.
+ * A token is base62(payment id) followed by a fixed-width base62 63-bit HMAC tag, so the QR code
+ * carries a short URL instead of the full receipt, and verification is a signature check plus a
+ * cached status lookup.
+ */
+@Service
+public class QrTokenService {
+    private static final Logger logger = LoggerFactory.getLogger(QrTokenService.class);
+
+    private static final char[] BASE62 = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".toCharArray();
+    // 62^11 > 2^63, so any tag fits in 11 characters
+    private static final int TAG_LENGTH = 11;
+    private static final byte[] TOKEN_VERSION = {'q', 'r', '1'};
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Value("${app.qr.token-secret}")
+    private String tokenSecret;
+
+    @Value("${app.public-base-url:http://localhost:8080}")
+    private String publicBaseUrl;
+
+    @Value("${app.qr.status-cache-ttl-ms:30000}")
+    private long statusCacheTtlMs;
+
+    @Value("${app.qr.status-cache-size:10000}")
+    private int statusCacheSize;
+
+    private HmacSha256Signer signer;
+
+    private final Map<Long, CachedStatus> statusCache = new ConcurrentHashMap<>();
+
+    private record CachedStatus(QrVerificationResponse response, long expiresAtMillis) {
+    }
+
+    @PostConstruct
+    public void init() {
+        signer = new HmacSha256Signer(tokenSecret);
+        publicBaseUrl = publicBaseUrl.endsWith("/") ? publicBaseUrl.substring(0, publicBaseUrl.length() - 1) : publicBaseUrl;
+    }
+
+    /**
+     * URL encoded into the receipt QR code for a payment
+     */
+    public String verificationUrl(Long paymentId) {
+        return publicBaseUrl + "/api/payment/verify-qr?t=" + createToken(paymentId);
+    }
+
+    public String createToken(Long paymentId) {
+        if (paymentId == null || paymentId < 0) {
+            throw new IllegalArgumentException("Invalid payment id");
+        }
+        StringBuilder token = new StringBuilder(24);
+        appendBase62(token, paymentId, 0);
+        appendBase62(token, tag(paymentId), TAG_LENGTH);
+        return token.toString();
+    }
+
+    /**
+     * Payment id carried by a token, or empty when the token is malformed or its signature does not match
+     */
+    public Optional<Long> parseToken(String token) {
+        if (token == null || token.length() <= TAG_LENGTH || token.length() > TAG_LENGTH * 2) {
+            return Optional.empty();
+        }
+        long paymentId = decodeBase62(token, 0, token.length() - TAG_LENGTH);
+        long tag = decodeBase62(token, token.length() - TAG_LENGTH, token.length());
+        if (paymentId < 0 || tag < 0) {
+            return Optional.empty();
+        }
+
+        byte[] expected = ByteBuffer.allocate(Long.BYTES).putLong(tag(paymentId)).array();
+        byte[] actual = ByteBuffer.allocate(Long.BYTES).putLong(tag).array();
+        return MessageDigest.isEqual(expected, actual) ? Optional.of(paymentId) : Optional.empty();
+    }
+
+    /**
+     * Verify a token and return the payment's current status, served from a short-lived cache
+     */
+    public Optional<QrVerificationResponse> verify(String token) {
+        Optional<Long> paymentId = parseToken(token);
+        if (paymentId.isEmpty()) {
+            logger.debug("Rejected QR token: {}", token);
+            return Optional.empty();
+        }
+
+        long now = System.currentTimeMillis();
+        CachedStatus cached = statusCache.get(paymentId.get());
+        if (cached != null && cached.expiresAtMillis() > now) {
+            return Optional.of(cached.response());
+        }
+
+        Optional<QrVerificationResponse> response = paymentRepository.findViewById(paymentId.get())
+                .map(QrTokenService::toResponse);
+        if (response.isPresent()) {
+            if (statusCache.size() >= statusCacheSize) {
+                statusCache.values().removeIf(entry -> entry.expiresAtMillis() <= now);
+            }
+            if (statusCache.size() < statusCacheSize) {
+                statusCache.put(paymentId.get(), new CachedStatus(response.get(), now + statusCacheTtlMs));
+            }
+        }
+        return response;
+    }
+
+    private static QrVerificationResponse toResponse(PaymentView payment) {
+        return QrVerificationResponse.builder()
+                .valid(true)
+                .transactionId(payment.getRazorpayPaymentId())
+                .orderId(payment.getRazorpayOrderId())
+                .amount(payment.getAmount())
+                .currency(payment.getCurrency())
+                .status(payment.getStatus() != null ? payment.getStatus().toString() : null)
+                .description(payment.getDescription())
+                .paymentDate(payment.getCreatedAt())
+                .checkedAt(Instant.now())
+                .build();
+    }
+
+    private long tag(long paymentId) {
+        byte[] payload = ByteBuffer.allocate(TOKEN_VERSION.length + Long.BYTES)
+                .put(TOKEN_VERSION)
+                .putLong(paymentId)
+                .array();
+        // Top 63 bits of the HMAC, kept non-negative so decoding can use plain signed arithmetic
+        return ByteBuffer.wrap(signer.sign(payload)).getLong() >>> 1;
+    }
+
+    /**
+     * Append a non-negative value in base62, left-padded with '0' to the given width
+     */
+    private static void appendBase62(StringBuilder out, long value, int width) {
+        char[] digits = new char[TAG_LENGTH];
+        int position = digits.length;
+        do {
+            digits[--position] = BASE62[(int) (value % 62)];
+            value /= 62;
+        } while (value != 0);
+        for (int i = digits.length - position; i < width; i++) {
+            out.append('0');
+        }
+        out.append(digits, position, digits.length - position);
+    }
+
+    /**
+     * Decode base62; returns -1 for invalid characters or values past Long.MAX_VALUE
+     */
+    private static long decodeBase62(String text, int start, int end) {
+        long value = 0;
+        try {
+            for (int i = start; i < end; i++) {
+                int digit = digitOf(text.charAt(i));
+                if (digit < 0) {
+                    return -1;
+                }
+                value = Math.addExact(Math.multiplyExact(value, 62), digit);
+            }
+        } catch (ArithmeticException e) {
+            return -1;
+        }
+        return value;
+    }
+
+    private static int digitOf(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A' + 10;
+        }
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a' + 36;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,402 @@
+package com.saasapp.dynamic_app.service;
+
+import com.razorpay.Order;
+import com.razorpay.Payment;
+import com.razorpay.RazorpayClient;
+import com.razorpay.RazorpayException;
+import com.razorpay.Refund;
+import com.saasapp.dynamic_app.exception.PaymentGatewayException;
+import com.saasapp.dynamic_app.exception.PaymentGatewayException.Reason;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * All Razorpay API calls go through here.
+ * Each call runs on a dedicated pool with a per-operation timeout, behind a bulkhead that caps
+ * concurrent gateway calls and a circuit breaker that fails fast while the gateway is unhealthy,
+ * so a slow gateway ties up at most the bulkhead's threads instead of every request worker.
+ */
+@Component
+public class RazorpayGateway implements PaymentSettlementSource {
+    private static final Logger logger = LoggerFactory.getLogger(RazorpayGateway.class);
+
+    public enum Operation {
+        CREATE_ORDER, FETCH_PAYMENT, REFUND, FETCH_REFUNDS, LIST_PAYMENTS
+    }
+
+    public enum CircuitState {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    @FunctionalInterface
+    private interface GatewayCall<T> {
+        T call(RazorpayClient client) throws Exception;
+    }
+
+    @Value("${razorpay.key.id}")
+    private String razorpayKeyId;
+
+    @Value("${razorpay.key.secret}")
+    private String razorpayKeySecret;
+
+    @Value("${payment.gateway.timeout.create-order-ms:10000}")
+    private long createOrderTimeoutMs;
+
+    @Value("${payment.gateway.timeout.fetch-payment-ms:5000}")
+    private long fetchPaymentTimeoutMs;
+
+    @Value("${payment.gateway.timeout.refund-ms:15000}")
+    private long refundTimeoutMs;
+
+    @Value("${payment.gateway.timeout.list-payments-ms:20000}")
+    private long listPaymentsTimeoutMs;
+
+    @Value("${payment.gateway.bulkhead.max-concurrent-calls:16}")
+    private int maxConcurrentCalls;
+
+    @Value("${payment.gateway.bulkhead.max-wait-ms:100}")
+    private long bulkheadMaxWaitMs;
+
+    @Value("${payment.gateway.circuit.window-size:20}")
+    private int windowSize;
+
+    @Value("${payment.gateway.circuit.minimum-calls:10}")
+    private int minimumCalls;
+
+    @Value("${payment.gateway.circuit.failure-rate-threshold:50}")
+    private int failureRateThreshold;
+
+    @Value("${payment.gateway.circuit.open-duration-ms:30000}")
+    private long openDurationMs;
+
+    @Value("${payment.gateway.circuit.half-open-calls:3}")
+    private int halfOpenCalls;
+
+    private RazorpayClient razorpayClient;
+
+    private ExecutorService executor;
+
+    private Semaphore bulkhead;
+
+    private CircuitBreaker circuitBreaker;
+
+    private final Map<Operation, OperationMetrics> metrics = new EnumMap<>(Operation.class);
+
+    @PostConstruct
+    public void init() {
+        try {
+            razorpayClient = new RazorpayClient(razorpayKeyId, razorpayKeySecret);
+            logger.info("Razorpay client initialized successfully");
+        } catch (Exception e) {
+            logger.error("Failed to initialize Razorpay client: {}", e.getMessage());
+            throw new RuntimeException("Failed to initialize Razorpay client", e);
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(maxConcurrentCalls, runnable -> {
+            Thread thread = new Thread(runnable, "razorpay-gateway-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        bulkhead = new Semaphore(maxConcurrentCalls);
+        circuitBreaker = new CircuitBreaker();
+        for (Operation operation : Operation.values()) {
+            metrics.put(operation, new OperationMetrics());
+        }
+    }
+
+    public Order createOrder(JSONObject request) {
+        return execute(Operation.CREATE_ORDER, createOrderTimeoutMs, client -> client.orders.create(request));
+    }
+
+    public Payment fetchPayment(String razorpayPaymentId) {
+        return execute(Operation.FETCH_PAYMENT, fetchPaymentTimeoutMs, client -> client.payments.fetch(razorpayPaymentId));
+    }
+
+    public Refund refund(String razorpayPaymentId, JSONObject request) {
+        return execute(Operation.REFUND, refundTimeoutMs, client -> client.payments.refund(razorpayPaymentId, request));
+    }
+
+    public List<Refund> fetchRefunds(String razorpayPaymentId) {
+        return execute(Operation.FETCH_REFUNDS, fetchPaymentTimeoutMs, client -> client.payments.fetchAllRefunds(razorpayPaymentId));
+    }
+
+    @Override
+    public List<GatewayPayment> listPayments(Instant from, Instant to, int count, int skip) {
+        JSONObject request = new JSONObject();
+        request.put("from", from.getEpochSecond());
+        request.put("to", to.getEpochSecond() - 1);
+        request.put("count", count);
+        request.put("skip", skip);
+
+        List<Payment> payments = execute(Operation.LIST_PAYMENTS, listPaymentsTimeoutMs, client -> client.payments.fetchAll(request));
+        List<GatewayPayment> page = new ArrayList<>(payments.size());
+        for (Payment payment : payments) {
+            JSONObject json = payment.toJson();
+            page.add(new GatewayPayment(
+                    json.optString("id", null),
+                    json.optString("order_id", null),
+                    json.optString("status", null),
+                    json.optString("method", null),
+                    json.optString("error_description", null)));
+        }
+        return page;
+    }
+
+    public CircuitState getCircuitState() {
+        return circuitBreaker.currentState();
+    }
+
+    /**
+     * Breaker state, bulkhead occupancy and per-operation counters
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("circuitState", circuitBreaker.currentState().name());
+        snapshot.put("circuitOpenedCount", circuitBreaker.openedCount.get());
+        snapshot.put("inFlightCalls", maxConcurrentCalls - bulkhead.availablePermits());
+        snapshot.put("maxConcurrentCalls", maxConcurrentCalls);
+        Map<String, Object> operations = new LinkedHashMap<>();
+        metrics.forEach((operation, counters) -> operations.put(operation.name(), counters.snapshot()));
+        snapshot.put("operations", operations);
+        return snapshot;
+    }
+
+    private <T> T execute(Operation operation, long timeoutMs, GatewayCall<T> call) {
+        OperationMetrics counters = metrics.get(operation);
+        counters.calls.incrementAndGet();
+
+        if (!circuitBreaker.tryAcquire()) {
+            counters.shortCircuited.incrementAndGet();
+            throw new PaymentGatewayException(Reason.CIRCUIT_OPEN, "Payment gateway temporarily unavailable");
+        }
+
+        if (!acquireBulkhead()) {
+            circuitBreaker.releaseWithoutOutcome();
+            counters.rejected.incrementAndGet();
+            throw new PaymentGatewayException(Reason.BULKHEAD_FULL, "Payment gateway is busy, try again shortly");
+        }
+
+        long start = System.nanoTime();
+        Future<T> future;
+        try {
+            // The permit is returned when the call actually finishes, even if the caller already timed out
+            future = executor.submit(() -> {
+                try {
+                    return call.call(razorpayClient);
+                } finally {
+                    bulkhead.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            bulkhead.release();
+            circuitBreaker.releaseWithoutOutcome();
+            counters.rejected.incrementAndGet();
+            throw new PaymentGatewayException(Reason.BULKHEAD_FULL, "Payment gateway executor unavailable", e);
+        }
+
+        try {
+            T result = future.get(timeoutMs, TimeUnit.MILLISECONDS);
+            circuitBreaker.onSuccess();
+            counters.recordSuccess(System.nanoTime() - start);
+            return result;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            circuitBreaker.onFailure();
+            counters.timeouts.incrementAndGet();
+            logger.warn("Razorpay {} timed out after {} ms", operation, timeoutMs);
+            throw new PaymentGatewayException(Reason.TIMEOUT, "Payment gateway timed out", e);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            circuitBreaker.releaseWithoutOutcome();
+            Thread.currentThread().interrupt();
+            throw new PaymentGatewayException(Reason.FAILURE, "Interrupted while calling payment gateway", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (isClientError(cause)) {
+                // The gateway answered; a rejected request says nothing about its health
+                circuitBreaker.onSuccess();
+                counters.clientErrors.incrementAndGet();
+            } else {
+                circuitBreaker.onFailure();
+                counters.failures.incrementAndGet();
+            }
+            throw new PaymentGatewayException(Reason.FAILURE, cause.getMessage(), cause);
+        }
+    }
+
+    private boolean acquireBulkhead() {
+        try {
+            return bulkhead.tryAcquire(bulkheadMaxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static boolean isClientError(Throwable cause) {
+        return cause instanceof RazorpayException
+                && cause.getMessage() != null
+                && cause.getMessage().contains("BAD_REQUEST_ERROR");
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Count-based breaker: opens when the failure rate over the last window-size calls crosses the
+     * threshold, fails fast for open-duration, then lets a few probe calls through to decide.
+     */
+    private class CircuitBreaker {
+        private final boolean[] outcomes = new boolean[windowSize];
+        private int recorded;
+        private int position;
+        private int failuresInWindow;
+
+        private CircuitState state = CircuitState.CLOSED;
+        private long openedAtNanos;
+        private int probesInFlight;
+        private int probeSuccesses;
+
+        private final AtomicLong openedCount = new AtomicLong();
+
+        synchronized boolean tryAcquire() {
+            if (state == CircuitState.OPEN) {
+                if (System.nanoTime() - openedAtNanos < TimeUnit.MILLISECONDS.toNanos(openDurationMs)) {
+                    return false;
+                }
+                transition(CircuitState.HALF_OPEN);
+            }
+            if (state == CircuitState.HALF_OPEN) {
+                if (probesInFlight + probeSuccesses >= halfOpenCalls) {
+                    return false;
+                }
+                probesInFlight++;
+            }
+            return true;
+        }
+
+        synchronized void onSuccess() {
+            if (state == CircuitState.HALF_OPEN) {
+                probesInFlight--;
+                if (++probeSuccesses >= halfOpenCalls) {
+                    transition(CircuitState.CLOSED);
+                }
+                return;
+            }
+            record(false);
+        }
+
+        synchronized void onFailure() {
+            if (state == CircuitState.HALF_OPEN) {
+                probesInFlight--;
+                transition(CircuitState.OPEN);
+                return;
+            }
+            record(true);
+            if (state == CircuitState.CLOSED && recorded >= minimumCalls
+                    && failuresInWindow * 100 >= failureRateThreshold * recorded) {
+                transition(CircuitState.OPEN);
+            }
+        }
+
+        synchronized void releaseWithoutOutcome() {
+            if (state == CircuitState.HALF_OPEN && probesInFlight > 0) {
+                probesInFlight--;
+            }
+        }
+
+        synchronized CircuitState currentState() {
+            return state;
+        }
+
+        private void record(boolean failure) {
+            if (recorded == outcomes.length) {
+                if (outcomes[position]) {
+                    failuresInWindow--;
+                }
+            } else {
+                recorded++;
+            }
+            outcomes[position] = failure;
+            if (failure) {
+                failuresInWindow++;
+            }
+            position = (position + 1) % outcomes.length;
+        }
+
+        private void transition(CircuitState next) {
+            logger.warn("Razorpay circuit breaker {} -> {}", state, next);
+            state = next;
+            probesInFlight = 0;
+            probeSuccesses = 0;
+            if (next == CircuitState.OPEN) {
+                openedAtNanos = System.nanoTime();
+                openedCount.incrementAndGet();
+            }
+            if (next == CircuitState.CLOSED) {
+                Arrays.fill(outcomes, false);
+                recorded = 0;
+                position = 0;
+                failuresInWindow = 0;
+            }
+        }
+    }
+
+    private static class OperationMetrics {
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong successes = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong clientErrors = new AtomicLong();
+        private final AtomicLong timeouts = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong shortCircuited = new AtomicLong();
+        private final AtomicLong totalLatencyNanos = new AtomicLong();
+
+        void recordSuccess(long latencyNanos) {
+            successes.incrementAndGet();
+            totalLatencyNanos.addAndGet(latencyNanos);
+        }
+
+        Map<String, Object> snapshot() {
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            long successCount = successes.get();
+            snapshot.put("calls", calls.get());
+            snapshot.put("successes", successCount);
+            snapshot.put("failures", failures.get());
+            snapshot.put("clientErrors", clientErrors.get());
+            snapshot.put("timeouts", timeouts.get());
+            snapshot.put("bulkheadRejected", rejected.get());
+            snapshot.put("shortCircuited", shortCircuited.get());
+            snapshot.put("avgLatencyMs", successCount == 0 ? 0 : totalLatencyNanos.get() / successCount / 1_000_000);
+            return snapshot;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.saasapp.dynamic_app.service;
+
+import com.saasapp.dynamic_app.dto.PaymentPdfDTO;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * File-based store of rendered receipt PDFs, addressed by payment id and a hash of the receipt content.
+ * A receipt is rendered once per distinct content; later emails and downloads read the stored file.
+ * Layout: {app.receipts.dir}/{paymentId}/{contentHash}.pdf; receipts superseded by a newer one for
+ * the same payment are pruned by a sweep once they have been superseded for longer than a grace period.
+ */
+@Component
+public class ReceiptStore {
+    private static final Logger logger = LoggerFactory.getLogger(ReceiptStore.class);
+
+    // Bump when the receipt layout in PdfService changes, so stored receipts are re-rendered
+    private static final String LAYOUT_VERSION = "3";
+
+    @Autowired
+    private PdfService pdfService;
+
+    @Autowired
+    private QrTokenService qrTokenService;
+
+    @Value("${app.receipts.dir:./data/receipts}")
+    private String receiptsDir;
+
+    @Value("${app.receipts.prune-grace-ms:3600000}")
+    private long pruneGraceMs;
+
+    private Path root;
+
+    // Concurrent requests for the same receipt wait for a single render
+    private final Map<Path, CompletableFuture<StoredReceipt>> rendering = new ConcurrentHashMap<>();
+
+    public record StoredReceipt(Path path, String contentHash, long size) {
+        public String etag() {
+            return "\"" + contentHash + "\"";
+        }
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        root = Paths.get(receiptsDir).toAbsolutePath().normalize();
+        Files.createDirectories(root);
+        logger.info("Receipt store at {}", root);
+    }
+
+    /**
+     * Return the stored receipt for this content, rendering and storing it on first use
+     */
+    public StoredReceipt getOrRender(PaymentPdfDTO receipt) {
+        if (receipt.getVerificationUrl() == null && receipt.getPaymentId() != null) {
+            receipt.setVerificationUrl(qrTokenService.verificationUrl(receipt.getPaymentId()));
+        }
+        String contentHash = contentHash(receipt);
+        Path directory = root.resolve(receipt.getPaymentId() != null ? receipt.getPaymentId().toString() : "unassigned");
+        Path path = directory.resolve(contentHash + ".pdf");
+
+        StoredReceipt stored = existing(path, contentHash);
+        if (stored != null) {
+            return stored;
+        }
+
+        CompletableFuture<StoredReceipt> ours = new CompletableFuture<>();
+        CompletableFuture<StoredReceipt> running = rendering.putIfAbsent(path, ours);
+        if (running != null) {
+            return running.join();
+        }
+
+        try {
+            stored = existing(path, contentHash);
+            if (stored == null) {
+                stored = render(receipt, directory, path, contentHash);
+            }
+            ours.complete(stored);
+            return stored;
+        } catch (RuntimeException e) {
+            ours.completeExceptionally(e);
+            throw e;
+        } finally {
+            rendering.remove(path, ours);
+        }
+    }
+
+    /**
+     * Map a stored receipt read-only; the mapping stays valid after the channel is closed
+     */
+    public MappedByteBuffer map(StoredReceipt receipt) {
+        try (FileChannel channel = FileChannel.open(receipt.path(), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, receipt.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read receipt " + receipt.path(), e);
+        }
+    }
+
+    private StoredReceipt existing(Path path, String contentHash) {
+        try {
+            return Files.exists(path) ? new StoredReceipt(path, contentHash, Files.size(path)) : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private StoredReceipt render(PaymentPdfDTO receipt, Path directory, Path path, String contentHash) {
+        byte[] pdf = pdfService.generatePaymentPdf(receipt);
+        try {
+            Files.createDirectories(directory);
+            // Write aside and move into place so readers never see a partial file
+            Path temp = Files.createTempFile(directory, contentHash, ".tmp");
+            try {
+                Files.write(temp, pdf);
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to store receipt " + path, e);
+        }
+        logger.debug("Stored receipt {} ({} bytes)", path, pdf.length);
+        return new StoredReceipt(path, contentHash, pdf.length);
+    }
+
+    /**
+     * Delete receipts that a newer receipt for the same payment replaced more than the grace period ago.
+     * Pruning lags behind rendering so downloads and exports already holding an older path can still open it.
+     */
+    @Scheduled(cron = "${app.receipts.prune-cron:0 45 * * * *}")
+    public void pruneSuperseded() {
+        long cutoff = System.currentTimeMillis() - pruneGraceMs;
+        int deleted = 0;
+        try (DirectoryStream<Path> payments = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path directory : payments) {
+                if (!directory.getFileName().toString().equals("unassigned")) {
+                    deleted += pruneDirectory(directory, cutoff);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to prune superseded receipts: {}", e.getMessage());
+        }
+        if (deleted > 0) {
+            logger.info("Pruned {} superseded receipts", deleted);
+        }
+    }
+
+    private int pruneDirectory(Path directory, long cutoff) throws IOException {
+        List<Path> receipts = new ArrayList<>();
+        Path newest = null;
+        long newestModified = Long.MIN_VALUE;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.pdf")) {
+            for (Path file : files) {
+                long modified = Files.getLastModifiedTime(file).toMillis();
+                if (modified > newestModified) {
+                    newest = file;
+                    newestModified = modified;
+                }
+                receipts.add(file);
+            }
+        }
+        // The older receipts have been superseded since the newest one was stored
+        if (newest == null || newestModified > cutoff) {
+            return 0;
+        }
+        int deleted = 0;
+        for (Path file : receipts) {
+            if (!file.equals(newest) && Files.deleteIfExists(file)) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    private static String contentHash(PaymentPdfDTO receipt) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            update(digest, LAYOUT_VERSION);
+            update(digest, receipt.getPaymentId() != null ? receipt.getPaymentId().toString() : null);
+            update(digest, receipt.getTransactionId());
+            update(digest, receipt.getUserName());
+            update(digest, receipt.getUserEmail());
+            update(digest, receipt.getAmount() != null ? receipt.getAmount().toString() : null);
+            update(digest, receipt.getCurrency());
+            update(digest, receipt.getPaymentStatus());
+            update(digest, receipt.getPaymentDate());
+            update(digest, receipt.getDescription());
+            update(digest, receipt.getVerificationUrl());
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (Exception e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // Length-prefixed so field boundaries can't be shifted between values
+    private static void update(MessageDigest digest, String value) {
+        if (value == null) {
+            digest.update((byte) 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        digest.update((byte) 1);
+        digest.update(new byte[]{(byte) (bytes.length >>> 24), (byte) (bytes.length >>> 16), (byte) (bytes.length >>> 8), (byte) bytes.length});
+        digest.update(bytes);
+    }
+}
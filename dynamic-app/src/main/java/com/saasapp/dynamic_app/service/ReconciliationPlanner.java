@@ -0,0 +1,110 @@
+package com.saasapp.dynamic_app.service;
+
+import com.saasapp.dynamic_app.dto.PaymentReconciliationRow;
+import com.saasapp.dynamic_app.entity.PaymentEntity.PaymentStatus;
+import com.saasapp.dynamic_app.service.PaymentSettlementSource.GatewayPayment;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pure reconciliation logic, kept free of Spring and the database so it can be exercised
+ * against a stub {@link PaymentSettlementSource}.
+ */
+public final class ReconciliationPlanner {
+
+    /**
+     * A status change to apply to the local payment of an order
+     */
+    public record Correction(String orderId, String paymentId, PaymentStatus target, String method, String errorDescription) {
+    }
+
+    private ReconciliationPlanner() {
+    }
+
+    /**
+     * Page through the gateway listing for [from, to) and keep the most advanced attempt per order
+     */
+    public static Map<String, GatewayPayment> collectGatewayPayments(PaymentSettlementSource source,
+                                                                     Instant from, Instant to, int pageSize) {
+        Map<String, GatewayPayment> byOrder = new HashMap<>();
+        int skip = 0;
+        while (true) {
+            List<GatewayPayment> page = source.listPayments(from, to, pageSize, skip);
+            for (GatewayPayment payment : page) {
+                if (payment.orderId() == null) {
+                    continue;
+                }
+                byOrder.merge(payment.orderId(), payment,
+                        (current, candidate) -> rank(candidate.status()) > rank(current.status()) ? candidate : current);
+            }
+            if (page.size() < pageSize) {
+                return byOrder;
+            }
+            skip += page.size();
+        }
+    }
+
+    /**
+     * Corrections needed to bring local rows in line with the gateway. Rows the state machine
+     * does not allow to move are left alone; a refund on a not-yet-captured row is applied as
+     * capture followed by refund.
+     */
+    public static List<Correction> plan(List<? extends PaymentReconciliationRow> rows, Map<String, GatewayPayment> gatewayPayments) {
+        List<Correction> corrections = new ArrayList<>();
+        for (PaymentReconciliationRow row : rows) {
+            GatewayPayment gateway = gatewayPayments.get(row.getRazorpayOrderId());
+            PaymentStatus target = gateway != null ? toPaymentStatus(gateway.status()) : null;
+            if (target == null || target == row.getStatus()) {
+                continue;
+            }
+
+            if (row.getStatus().canTransitionTo(target)) {
+                corrections.add(correction(row, gateway, target));
+            } else if (target == PaymentStatus.REFUNDED && row.getStatus().canTransitionTo(PaymentStatus.CAPTURED)) {
+                corrections.add(correction(row, gateway, PaymentStatus.CAPTURED));
+                corrections.add(correction(row, gateway, PaymentStatus.REFUNDED));
+            }
+        }
+        return corrections;
+    }
+
+    /**
+     * Map a Razorpay payment status; "created" (attempt not finished) maps to null
+     */
+    public static PaymentStatus toPaymentStatus(String gatewayStatus) {
+        if (gatewayStatus == null) {
+            return null;
+        }
+        return switch (gatewayStatus) {
+            case "authorized" -> PaymentStatus.AUTHORIZED;
+            case "captured" -> PaymentStatus.CAPTURED;
+            case "refunded" -> PaymentStatus.REFUNDED;
+            case "failed" -> PaymentStatus.FAILED;
+            default -> null;
+        };
+    }
+
+    private static Correction correction(PaymentReconciliationRow row, GatewayPayment gateway, PaymentStatus target) {
+        return new Correction(row.getRazorpayOrderId(), gateway.paymentId(), target, gateway.method(),
+                target == PaymentStatus.FAILED ? gateway.errorDescription() : null);
+    }
+
+    // An order can have several attempts; the most advanced one decides its status
+    private static int rank(String gatewayStatus) {
+        PaymentStatus status = toPaymentStatus(gatewayStatus);
+        if (status == null) {
+            return 0;
+        }
+        return switch (status) {
+            case FAILED -> 1;
+            case AUTHORIZED -> 2;
+            case CAPTURED -> 3;
+            case REFUNDED -> 4;
+            default -> 0;
+        };
+    }
+}
@@ -0,0 +1,150 @@
+package com.saasapp.dynamic_app.service;
+
+import com.saasapp.dynamic_app.entity.RefreshToken;
+import com.saasapp.dynamic_app.repository.RefreshTokenRepository;
+import com.saasapp.dynamic_app.security.JwtTokenProvider;
+import io.jsonwebtoken.Claims;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Refresh token store with one-time-use rotation and session revocation.
+ * The database is the source of truth; revoked session ids are mirrored in memory
+ * so request authentication can reject them without a query.
+ */
+@Service
+public class RefreshTokenService {
+    private static final Logger logger = LoggerFactory.getLogger(RefreshTokenService.class);
+
+    // Tolerate small clock differences between instances when syncing revocations
+    private static final long SYNC_OVERLAP_SECONDS = 5;
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Autowired
+    private JwtTokenProvider tokenProvider;
+
+    @Value("${jwt.refresh.expiration}")
+    private long refreshTokenExpirationMs;
+
+    // Revoked session id -> time after which no token carrying it can still be valid
+    private final Map<String, Instant> revokedSessions = new ConcurrentHashMap<>();
+
+    private volatile Instant lastSync = Instant.EPOCH;
+
+    public String newSessionId() {
+        return UUID.randomUUID().toString();
+    }
+
+    /**
+     * Issue and persist a new refresh token for the given session
+     */
+    public String issue(String email, String sessionId) {
+        String tokenId = UUID.randomUUID().toString();
+        refreshTokenRepository.save(RefreshToken.builder()
+                .tokenId(tokenId)
+                .sessionId(sessionId)
+                .userEmail(email)
+                .expiresAt(Instant.now().plusMillis(refreshTokenExpirationMs))
+                .build());
+        return tokenProvider.generateRefreshToken(email, tokenId, sessionId);
+    }
+
+    /**
+     * Exchange a refresh token for a new one. Each token can be used exactly once;
+     * presenting an already used token revokes the whole session.
+     */
+    public Rotation rotate(String refreshToken) {
+        Claims claims = tokenProvider.parseClaims(refreshToken);
+
+        if (!JwtTokenProvider.TOKEN_TYPE_REFRESH.equals(claims.get(JwtTokenProvider.CLAIM_TYPE, String.class))) {
+            throw new RuntimeException("Token is not a refresh token");
+        }
+
+        String tokenId = claims.getId();
+        String sessionId = claims.get(JwtTokenProvider.CLAIM_SESSION_ID, String.class);
+        if (tokenId == null || sessionId == null) {
+            throw new RuntimeException("Refresh token is missing its id");
+        }
+
+        if (isSessionRevoked(sessionId)) {
+            throw new RuntimeException("Refresh token has been revoked");
+        }
+
+        if (refreshTokenRepository.markUsed(tokenId, Instant.now()) == 0) {
+            logger.warn("Refresh token reuse or unknown token detected, revoking session: {}", sessionId);
+            revokeSession(sessionId);
+            throw new RuntimeException("Refresh token has already been used or revoked");
+        }
+
+        String email = claims.getSubject();
+        return new Rotation(email, sessionId, issue(email, sessionId));
+    }
+
+    public void revokeSession(String sessionId) {
+        refreshTokenRepository.revokeSession(sessionId, Instant.now());
+        markSessionRevoked(sessionId, Instant.now().plusMillis(refreshTokenExpirationMs));
+        logger.info("Session revoked: {}", sessionId);
+    }
+
+    public void revokeAllSessions(String email) {
+        List<RefreshToken> active = refreshTokenRepository.findByUserEmailAndRevokedFalse(email);
+        refreshTokenRepository.revokeAllForUser(email, Instant.now());
+        active.forEach(token -> markSessionRevoked(token.getSessionId(), token.getExpiresAt()));
+        logger.info("All sessions revoked for user: {}", email);
+    }
+
+    /**
+     * Constant-time check used on every authenticated request
+     */
+    public boolean isSessionRevoked(String sessionId) {
+        return sessionId != null && revokedSessions.containsKey(sessionId);
+    }
+
+    /**
+     * Pull revocations made by other instances and drop entries that can no longer matter
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation.sync-interval-ms:10000}")
+    public void syncRevocations() {
+        try {
+            Instant now = Instant.now();
+            Instant since = lastSync.equals(Instant.EPOCH) ? Instant.EPOCH : lastSync.minusSeconds(SYNC_OVERLAP_SECONDS);
+
+            List<RefreshToken> revoked = refreshTokenRepository.findByRevokedTrueAndRevokedAtAfterAndExpiresAtAfter(since, now);
+            revoked.forEach(token -> markSessionRevoked(token.getSessionId(), token.getExpiresAt()));
+
+            revokedSessions.values().removeIf(expiresAt -> expiresAt.isBefore(now));
+            lastSync = now;
+
+            if (!revoked.isEmpty()) {
+                logger.debug("Synced {} revoked refresh tokens, {} revoked sessions tracked", revoked.size(), revokedSessions.size());
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to sync token revocations: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(cron = "${jwt.refresh.cleanup-cron:0 30 3 * * *}")
+    public void purgeExpired() {
+        int deleted = refreshTokenRepository.deleteExpired(Instant.now());
+        logger.info("Purged {} expired refresh tokens", deleted);
+    }
+
+    private void markSessionRevoked(String sessionId, Instant expiresAt) {
+        revokedSessions.merge(sessionId, expiresAt, (current, candidate) -> candidate.isAfter(current) ? candidate : current);
+    }
+
+    public record Rotation(String email, String sessionId, String refreshToken) {
+    }
+}
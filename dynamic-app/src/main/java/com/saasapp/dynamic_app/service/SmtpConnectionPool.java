@@ -0,0 +1,262 @@
+package com.saasapp.dynamic_app.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of connected, authenticated SMTP transports built from the JavaMailSenderImpl session.
+ * JavaMailSender opens a connection, does STARTTLS and AUTH for every message; here a connection
+ * is reused for many messages and only replaced when it fails a NOOP check, hits its message or
+ * age limit, or sits idle too long. Point spring.mail.host/port at a local SMTP stand-in (e.g.
+ * GreenMail) to exercise it in tests.
+ */
+@Component
+public class SmtpConnectionPool {
+    private static final Logger logger = LoggerFactory.getLogger(SmtpConnectionPool.class);
+
+    @Autowired
+    private JavaMailSender mailSender;
+
+    @Value("${app.email.smtp.pool.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.email.smtp.pool.max-connections:4}")
+    private int maxConnections;
+
+    @Value("${app.email.smtp.pool.max-messages-per-connection:100}")
+    private int maxMessagesPerConnection;
+
+    @Value("${app.email.smtp.pool.max-age-ms:600000}")
+    private long maxAgeMs;
+
+    @Value("${app.email.smtp.pool.max-idle-ms:30000}")
+    private long maxIdleMs;
+
+    // Connections idle for less than this are trusted without a NOOP round trip
+    @Value("${app.email.smtp.pool.validate-after-idle-ms:2000}")
+    private long validateAfterIdleMs;
+
+    @Value("${app.email.smtp.pool.borrow-timeout-ms:30000}")
+    private long borrowTimeoutMs;
+
+    private JavaMailSenderImpl sender;
+
+    private Semaphore permits;
+
+    // Most recently returned first, so a few connections stay warm and the rest age out
+    private final LinkedBlockingDeque<PooledTransport> idle = new LinkedBlockingDeque<>();
+
+    private final AtomicLong opened = new AtomicLong();
+    private final AtomicLong closed = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failedValidations = new AtomicLong();
+
+    private static final class PooledTransport {
+        private final Transport transport;
+        private final long createdAt = System.currentTimeMillis();
+        private long lastUsedAt = createdAt;
+        private int messages;
+
+        private PooledTransport(Transport transport) {
+            this.transport = transport;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        if (enabled && mailSender instanceof JavaMailSenderImpl impl) {
+            sender = impl;
+            permits = new Semaphore(maxConnections, true);
+            logger.info("SMTP connection pool enabled for {}:{} (max {} connections)", impl.getHost(), impl.getPort(), maxConnections);
+        } else {
+            logger.info("SMTP connection pool disabled, using JavaMailSender per message");
+        }
+    }
+
+    /**
+     * Send a message on a pooled connection. An idle connection that turns out to be dead is discarded
+     * and the message retried once on a fresh one; a freshly opened connection that fails, or a server
+     * that rejects the message, is not retried.
+     */
+    public void send(MimeMessage message) throws MessagingException {
+        if (sender == null) {
+            mailSender.send(message);
+            return;
+        }
+
+        prepare(message);
+        acquirePermit();
+        try {
+            PooledTransport connection = borrowIdle();
+            boolean reused = connection != null;
+            if (!reused) {
+                connection = connect();
+            }
+            try {
+                connection.transport.sendMessage(message, message.getAllRecipients());
+            } catch (MessagingException e) {
+                // A dropped connection can also surface as SendFailedException, so ask the server
+                if (e instanceof SendFailedException && connection.transport.isConnected()) {
+                    release(connection);
+                    throw e;
+                }
+                discard(connection);
+                if (!reused) {
+                    throw e;
+                }
+                logger.debug("SMTP send failed on pooled connection, retrying on a new one: {}", e.getMessage());
+                connection = connect();
+                try {
+                    connection.transport.sendMessage(message, message.getAllRecipients());
+                } catch (MessagingException retryError) {
+                    discard(connection);
+                    throw retryError;
+                }
+            }
+            connection.messages++;
+            sent.incrementAndGet();
+            release(connection);
+        } finally {
+            permits.release();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", sender != null);
+        stats.put("idleConnections", idle.size());
+        stats.put("connectionsOpened", opened.get());
+        stats.put("connectionsClosed", closed.get());
+        stats.put("messagesSent", sent.get());
+        stats.put("failedValidations", failedValidations.get());
+        long openedCount = opened.get();
+        stats.put("messagesPerConnection", openedCount == 0 ? 0 : sent.get() / openedCount);
+        return stats;
+    }
+
+    /**
+     * Close connections the server would soon drop anyway
+     */
+    @Scheduled(fixedDelayString = "${app.email.smtp.pool.evict-interval-ms:15000}")
+    public void evictIdle() {
+        long now = System.currentTimeMillis();
+        List<PooledTransport> expired = new ArrayList<>();
+        idle.removeIf(connection -> {
+            boolean stale = now - connection.lastUsedAt > maxIdleMs || now - connection.createdAt > maxAgeMs;
+            if (stale) {
+                expired.add(connection);
+            }
+            return stale;
+        });
+        expired.forEach(this::discard);
+    }
+
+    // Same header handling as JavaMailSenderImpl.doSend
+    private static void prepare(MimeMessage message) throws MessagingException {
+        if (message.getSentDate() == null) {
+            message.setSentDate(new Date());
+        }
+        String messageId = message.getMessageID();
+        message.saveChanges();
+        if (messageId != null) {
+            message.setHeader("Message-ID", messageId);
+        }
+    }
+
+    private void acquirePermit() throws MessagingException {
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new MessagingException("Timed out waiting for an SMTP connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessagingException("Interrupted waiting for an SMTP connection", e);
+        }
+    }
+
+    /**
+     * Most recently used healthy idle connection, or null if a new one has to be opened
+     */
+    private PooledTransport borrowIdle() {
+        PooledTransport connection;
+        while ((connection = idle.pollFirst()) != null) {
+            long now = System.currentTimeMillis();
+            if (now - connection.createdAt > maxAgeMs || now - connection.lastUsedAt > maxIdleMs) {
+                discard(connection);
+                continue;
+            }
+            // isConnected() issues a NOOP on SMTP transports
+            if (now - connection.lastUsedAt > validateAfterIdleMs && !connection.transport.isConnected()) {
+                failedValidations.incrementAndGet();
+                discard(connection);
+                continue;
+            }
+            return connection;
+        }
+        return null;
+    }
+
+    private PooledTransport connect() throws MessagingException {
+        Transport transport = sender.getSession().getTransport(sender.getProtocol() != null ? sender.getProtocol() : "smtp");
+        String username = sender.getUsername();
+        String password = sender.getPassword();
+        if ("".equals(username)) {
+            username = null;
+            if ("".equals(password)) {
+                password = null;
+            }
+        }
+        transport.connect(sender.getHost(), sender.getPort(), username, password);
+        opened.incrementAndGet();
+        return new PooledTransport(transport);
+    }
+
+    private void release(PooledTransport connection) {
+        connection.lastUsedAt = System.currentTimeMillis();
+        if (connection.messages >= maxMessagesPerConnection
+                || connection.lastUsedAt - connection.createdAt > maxAgeMs) {
+            discard(connection);
+            return;
+        }
+        idle.offerFirst(connection);
+    }
+
+    private void discard(PooledTransport connection) {
+        closed.incrementAndGet();
+        try {
+            connection.transport.close();
+        } catch (MessagingException e) {
+            logger.debug("Error closing SMTP connection: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        PooledTransport connection;
+        while ((connection = idle.pollFirst()) != null) {
+            discard(connection);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.saasapp.dynamic_app.service;
+
+import com.saasapp.dynamic_app.dto.PaymentEmailRequest;
+import com.saasapp.dynamic_app.dto.PaymentPdfDTO;
+import com.saasapp.dynamic_app.dto.PaymentResponse;
+import com.saasapp.dynamic_app.entity.PaymentEntity.PaymentStatus;
+import com.saasapp.dynamic_app.repository.PaymentRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Streams a user's receipts for a period as a ZIP archive.
+ * Payments are read page by page with the keyset query and rendered on a bounded pool; only a small
+ * window of receipts is in flight at a time and entries are written in payment order as they complete.
+ */
+@Service
+public class StatementExportService {
+    private static final Logger logger = LoggerFactory.getLogger(StatementExportService.class);
+
+    private static final DateTimeFormatter ENTRY_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private ReceiptStore receiptStore;
+
+    // 0 means one render thread per core
+    @Value("${payment.statement.render-threads:0}")
+    private int renderThreads;
+
+    @Value("${payment.statement.page-size:200}")
+    private int pageSize;
+
+    @Value("${payment.statement.max-days:92}")
+    private int maxDays;
+
+    private ExecutorService renderPool;
+
+    private int window;
+
+    private record RenderedReceipt(String entryName, ReceiptStore.StoredReceipt receipt, long crc) {
+    }
+
+    @PostConstruct
+    public void init() {
+        int threads = renderThreads > 0 ? renderThreads : Runtime.getRuntime().availableProcessors();
+        // Enough queued work to keep every render thread busy while the writer drains the head
+        window = threads * 2;
+        AtomicInteger threadCount = new AtomicInteger();
+        renderPool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "statement-render-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Check the export parameters before the response is committed
+     */
+    public void validate(Instant from, Instant to) {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        if (Duration.between(from, to).toDays() > maxDays) {
+            throw new IllegalArgumentException("Statement period cannot exceed " + maxDays + " days");
+        }
+    }
+
+    /**
+     * Write one receipt PDF per matching payment to the stream as a ZIP archive, newest first
+     *
+     * @return number of receipts written
+     */
+    public int writeReceiptsZip(String userId, PaymentStatus status, Instant from, Instant to,
+                                OutputStream out) throws IOException {
+        long startNanos = System.nanoTime();
+        Deque<Future<RenderedReceipt>> inFlight = new ArrayDeque<>(window);
+        int written = 0;
+
+        ZipOutputStream zip = new ZipOutputStream(out);
+        try {
+            Instant afterCreatedAt = null;
+            Long afterId = null;
+            List<PaymentResponse> page;
+            do {
+                page = paymentRepository.findUserPaymentsPage(userId, afterCreatedAt, afterId, status, from, to, pageSize);
+                for (PaymentResponse payment : page) {
+                    if (inFlight.size() >= window) {
+                        writeEntry(zip, await(inFlight.removeFirst()));
+                        written++;
+                    }
+                    inFlight.addLast(renderPool.submit(() -> render(payment)));
+                }
+                if (!page.isEmpty()) {
+                    PaymentResponse last = page.get(page.size() - 1);
+                    afterCreatedAt = last.getCreatedAt();
+                    afterId = last.getId();
+                }
+            } while (page.size() == pageSize);
+
+            while (!inFlight.isEmpty()) {
+                writeEntry(zip, await(inFlight.removeFirst()));
+                written++;
+            }
+            zip.finish();
+        } finally {
+            // Client disconnects and render failures leave queued work behind
+            inFlight.forEach(future -> future.cancel(true));
+        }
+
+        logger.info("Exported {} receipts for userId: {} in {} ms", written, userId,
+                (System.nanoTime() - startNanos) / 1_000_000);
+        return written;
+    }
+
+    private RenderedReceipt render(PaymentResponse payment) {
+        PaymentPdfDTO receiptData = PaymentPdfDTO.fromEmailRequest(PaymentEmailRequest.forReceipt(payment));
+        ReceiptStore.StoredReceipt receipt = receiptStore.getOrRender(receiptData);
+
+        // Stored entries need the CRC up front; computing it here keeps the writer thread to plain copies
+        CRC32 crc = new CRC32();
+        crc.update(receiptStore.map(receipt));
+        return new RenderedReceipt(entryName(payment), receipt, crc.getValue());
+    }
+
+    private static String entryName(PaymentResponse payment) {
+        String reference = payment.getRazorpayPaymentId() != null
+                ? payment.getRazorpayPaymentId()
+                : payment.getRazorpayOrderId();
+        String date = ENTRY_DATE_FORMAT.format(payment.getCreatedAt().atZone(ZoneId.systemDefault()));
+        return date + "_" + reference.replaceAll("[^A-Za-z0-9_-]", "") + "_" + payment.getId() + ".pdf";
+    }
+
+    private static void writeEntry(ZipOutputStream zip, RenderedReceipt rendered) throws IOException {
+        // PDF streams are already deflated, so entries are stored rather than compressed again
+        ZipEntry entry = new ZipEntry(rendered.entryName());
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(rendered.receipt().size());
+        entry.setCompressedSize(rendered.receipt().size());
+        entry.setCrc(rendered.crc());
+        zip.putNextEntry(entry);
+        Files.copy(rendered.receipt().path(), zip);
+        zip.closeEntry();
+    }
+
+    private static RenderedReceipt await(Future<RenderedReceipt> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Statement export interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to render receipt: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        renderPool.shutdownNow();
+    }
+}
@@ -0,0 +1,79 @@
+package com.saasapp.dynamic_app.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Classpath HTML pages held in memory with a gzip variant computed once, so serving a page is a
+ * header comparison and a byte copy. Works for anything on the classpath, static resources or
+ * templates without model expressions.
+ */
+@Component
+public class StaticPageCache {
+    private static final Logger logger = LoggerFactory.getLogger(StaticPageCache.class);
+
+    public static final String VERIFY_QR_PAGE = "static/verify-qr.html";
+
+    private final Map<String, Page> pages = new ConcurrentHashMap<>();
+
+    /**
+     * Immutable page bytes; each representation has its own strong ETag as required for differing encodings
+     */
+    public record Page(byte[] identity, byte[] gzip, String etag, String gzipEtag) {
+    }
+
+    @PostConstruct
+    public void init() {
+        // Loaded up front so the first scan after a deploy doesn't pay for it
+        get(VERIFY_QR_PAGE);
+    }
+
+    public Page get(String location) {
+        return pages.computeIfAbsent(location, StaticPageCache::load);
+    }
+
+    private static Page load(String location) {
+        try (InputStream inputStream = StaticPageCache.class.getClassLoader().getResourceAsStream(location)) {
+            if (inputStream == null) {
+                throw new IllegalStateException(location + " not found on the classpath");
+            }
+            byte[] identity = inputStream.readAllBytes();
+            byte[] gzip = gzip(identity);
+
+            String hash = Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(MessageDigest.getInstance("SHA-256").digest(identity));
+            logger.info("Cached page {} ({} bytes, {} gzipped)", location, identity.length, gzip.length);
+            return new Page(identity, gzip, "\"" + hash + "\"", "\"" + hash + "-gz\"");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load " + location, e);
+        } catch (java.security.NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(content.length / 3);
+        // Compressed once at startup, so use the strongest level
+        try (GZIPOutputStream gzip = new GZIPOutputStream(buffer) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzip.write(content);
+        }
+        return buffer.toByteArray();
+    }
+}
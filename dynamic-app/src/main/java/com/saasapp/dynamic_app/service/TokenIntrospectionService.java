@@ -0,0 +1,112 @@
+package com.saasapp.dynamic_app.service;
+
+import com.saasapp.dynamic_app.dto.TokenIntrospectionResult;
+import com.saasapp.dynamic_app.security.JwtTokenProvider;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Verifies many tokens at once for gateways and batch workers.
+ * Signature checks are CPU bound, so tokens are verified in parallel on a pool sized to the cores.
+ */
+@Service
+public class TokenIntrospectionService {
+    private static final Logger logger = LoggerFactory.getLogger(TokenIntrospectionService.class);
+
+    // Results are handed to the caller chunk by chunk so they can be streamed out
+    private static final int CHUNK_SIZE = 256;
+
+    @Autowired
+    private JwtTokenProvider tokenProvider;
+
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
+    private final ExecutorService verifier = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(),
+            runnable -> {
+                Thread thread = new Thread(runnable, "token-introspection");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    /**
+     * Introspect all tokens, delivering results in request order
+     */
+    public void introspectAll(List<String> tokens, Consumer<TokenIntrospectionResult> sink) {
+        for (int start = 0; start < tokens.size(); start += CHUNK_SIZE) {
+            int end = Math.min(start + CHUNK_SIZE, tokens.size());
+
+            List<Future<TokenIntrospectionResult>> chunk = new ArrayList<>(end - start);
+            for (int i = start; i < end; i++) {
+                final int index = i;
+                chunk.add(verifier.submit(() -> introspect(index, tokens.get(index))));
+            }
+
+            for (Future<TokenIntrospectionResult> result : chunk) {
+                try {
+                    sink.accept(result.get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Token introspection interrupted", e);
+                } catch (Exception e) {
+                    throw new RuntimeException("Token introspection failed: " + e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    public TokenIntrospectionResult introspect(int index, String token) {
+        if (token == null || token.isBlank()) {
+            return inactive(index, "empty");
+        }
+
+        try {
+            Claims claims = tokenProvider.parseClaims(token);
+            String sessionId = claims.get(JwtTokenProvider.CLAIM_SESSION_ID, String.class);
+            boolean refresh = tokenProvider.isRefreshToken(claims);
+
+            TokenIntrospectionResult.TokenIntrospectionResultBuilder result = TokenIntrospectionResult.builder()
+                    .index(index)
+                    .subject(claims.getSubject())
+                    .type(refresh ? JwtTokenProvider.TOKEN_TYPE_REFRESH : "access")
+                    .sessionId(sessionId)
+                    .expiresAt(claims.getExpiration() != null ? claims.getExpiration().getTime() / 1000 : null);
+
+            if (refreshTokenService.isSessionRevoked(sessionId)) {
+                return result.active(false).error("revoked").build();
+            }
+            return result.active(true).build();
+        } catch (ExpiredJwtException e) {
+            return inactive(index, "expired");
+        } catch (Exception e) {
+            logger.debug("Token {} failed introspection: {}", index, e.getMessage());
+            return inactive(index, "invalid");
+        }
+    }
+
+    private TokenIntrospectionResult inactive(int index, String reason) {
+        return TokenIntrospectionResult.builder()
+                .index(index)
+                .active(false)
+                .error(reason)
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        verifier.shutdownNow();
+    }
+}
@@ -1,9 +1,13 @@
 package com.saasapp.dynamic_app.service.impl;
 
+import com.saasapp.dynamic_app.config.AsyncConfig;
+import com.saasapp.dynamic_app.config.EmailExecutorMetrics;
 import com.saasapp.dynamic_app.dto.PaymentEmailRequest;
+import com.saasapp.dynamic_app.dto.PaymentPdfDTO;
 import com.saasapp.dynamic_app.exception.EmailSendingException;
 import com.saasapp.dynamic_app.service.EmailService;
-import com.saasapp.dynamic_app.service.PdfService;
+import com.saasapp.dynamic_app.service.ReceiptStore;
+import com.saasapp.dynamic_app.service.SmtpConnectionPool;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -14,6 +18,9 @@ import org.springframework.stereotype.Service;
 
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
@@ -30,7 +37,13 @@ public class EmailServiceImpl implements EmailService {
     private JavaMailSender mailSender;
 
     @Autowired
-    private PdfService pdfService;
+    private ReceiptStore receiptStore;
+
+    @Autowired
+    private SmtpConnectionPool smtpConnectionPool;
+
+    @Autowired
+    private EmailExecutorMetrics emailExecutorMetrics;
 
     @Value("${app.email.from}")
     private String fromEmail;
@@ -92,7 +105,7 @@ public class EmailServiceImpl implements EmailService {
             );
 
             helper.setText(emailContent, true);
-            mailSender.send(message);
+            smtpConnectionPool.send(message);
             log.info("OTP email sent successfully to: {}", email);
         } catch (Exception e) {
             log.error("Failed to send OTP email to {}: {}", email, e.getMessage());
@@ -102,6 +115,7 @@ public class EmailServiceImpl implements EmailService {
 
     /**
      * Send welcome email after successful signup
+     * Delivered through the email outbox, which retries on failure
      */
     @Override
     public void sendWelcomeEmail(String email, String fullName) {
@@ -152,10 +166,11 @@ public class EmailServiceImpl implements EmailService {
             );
 
             helper.setText(emailContent, true);
-            mailSender.send(message);
+            smtpConnectionPool.send(message);
             log.info("Welcome email sent to: {}", email);
         } catch (Exception e) {
             log.error("Failed to send welcome email to {}: {}", email, e.getMessage());
+            throw new EmailSendingException("Failed to send welcome email", e);
         }
     }
 
@@ -197,7 +212,7 @@ public class EmailServiceImpl implements EmailService {
      * Non-blocking operation that executes in a separate thread
      */
     @Override
-    @Async
+    @Async(AsyncConfig.EMAIL_EXECUTOR)
     public void sendPaymentReceiptEmailAsync(PaymentEmailRequest request) {
         log.info(">>> ASYNC EMAIL THREAD STARTED for: {}", request.getEmail());
         log.debug("Processing async email sending request for: {}", request.getEmail());
@@ -206,6 +221,7 @@ public class EmailServiceImpl implements EmailService {
             sendPaymentReceiptEmail(request);
             log.info(">>> ASYNC EMAIL THREAD COMPLETED SUCCESSFULLY for: {}", request.getEmail());
         } catch (Exception e) {
+            emailExecutorMetrics.recordFailure();
             log.error(">>> ASYNC EMAIL THREAD FAILED for: {}", request.getEmail(), e);
         }
     }
@@ -265,23 +281,24 @@ public class EmailServiceImpl implements EmailService {
             log.debug("[STEP 4] Email HTML content added");
 
             log.debug("[STEP 5] Generating PDF attachment...");
-            // Generate PDF from PdfService
-            byte[] pdfContent = generatePaymentPdf(request);
-            log.debug("[STEP 5] PDF generated successfully, size: {} bytes", pdfContent.length);
+            // Rendered once per receipt content, then read from the receipt store (memory-mapped)
+            ReceiptStore.StoredReceipt receipt = generatePaymentPdf(request);
+            MappedByteBuffer pdfContent = receiptStore.map(receipt);
+            log.debug("[STEP 5] PDF ready, size: {} bytes", receipt.size());
 
             log.debug("[STEP 6] Attaching PDF to email...");
             // Attach PDF
             String fileName = "Payment_Receipt_" + request.getTransactionId() + ".pdf";
             helper.addAttachment(
                 fileName,
-                () -> new java.io.ByteArrayInputStream(pdfContent),
+                () -> new ByteBufferInputStream(pdfContent.duplicate()),
                 "application/pdf"
             );
             log.debug("[STEP 6] PDF attachment added: {}", fileName);
 
-            log.debug("[STEP 7] Sending email via SMTP...");
+            log.debug("[STEP 7] Sending email via pooled SMTP connection...");
             // Send email
-            mailSender.send(message);
+            smtpConnectionPool.send(message);
             log.debug("[STEP 7] Email sent successfully via SMTP");
 
         } catch (MessagingException e) {
@@ -296,34 +313,20 @@ public class EmailServiceImpl implements EmailService {
     }
 
     /**
-     * Generate payment PDF using PdfService
+     * Get the payment receipt PDF from the receipt store, rendering it on first use
      *
      * @param request PaymentEmailRequest with payment details
-     * @return byte array of PDF content
+     * @return stored receipt file
      * @throws EmailSendingException if PDF generation fails
      */
-    private byte[] generatePaymentPdf(PaymentEmailRequest request) {
+    private ReceiptStore.StoredReceipt generatePaymentPdf(PaymentEmailRequest request) {
         try {
             log.debug("Generating PDF for transaction: {}", request.getTransactionId());
 
-            // Create DTO for PdfService
-            com.saasapp.dynamic_app.dto.PaymentPdfDTO pdfDto =
-                com.saasapp.dynamic_app.dto.PaymentPdfDTO.builder()
-                    .transactionId(request.getTransactionId())
-                    .paymentId(request.getPaymentId())
-                    .userName(request.getUserName())
-                    .userEmail(request.getEmail())
-                    .amount(request.getAmount())
-                    .currency(request.getCurrency() != null ? request.getCurrency() : "INR")
-                    .paymentStatus(request.getStatus() != null ? request.getStatus() : "SUCCESS")
-                    .paymentDate(request.getDate() != null ? request.getDate() : LocalDateTime.now().toString())
-                    .description(request.getDescription())
-                    .build();
-
-            byte[] pdfContent = pdfService.generatePaymentPdf(pdfDto);
-            log.debug("PDF generated successfully, size: {} bytes", pdfContent.length);
-
-            return pdfContent;
+            ReceiptStore.StoredReceipt receipt = receiptStore.getOrRender(PaymentPdfDTO.fromEmailRequest(request));
+            log.debug("PDF available at {}, size: {} bytes", receipt.path(), receipt.size());
+
+            return receipt;
         } catch (Exception e) {
             log.error("Failed to generate PDF for transaction: {}", request.getTransactionId(), e);
             throw new EmailSendingException("Failed to generate payment PDF", e);
@@ -492,5 +495,39 @@ public class EmailServiceImpl implements EmailService {
             LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"))
         );
     }
+
+    /**
+     * Reads the remaining bytes of a buffer; each attachment read gets its own duplicate
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
 }
 
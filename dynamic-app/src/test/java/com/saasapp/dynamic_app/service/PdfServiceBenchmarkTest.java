@@ -0,0 +1,55 @@
+package com.saasapp.dynamic_app.service;
+
+import com.saasapp.dynamic_app.dto.PaymentPdfDTO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Per-receipt latency and allocation of PdfService.
+ * Run with: mvn test -Dtest=PdfServiceBenchmarkTest -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class PdfServiceBenchmarkTest {
+
+	private static final int WARMUP = 200;
+	private static final int ITERATIONS = 1000;
+
+	@Test
+	void receiptRendering() {
+		PdfService pdfService = new PdfService();
+		PaymentPdfDTO receipt = PaymentPdfDTO.builder()
+				.paymentId(42L)
+				.transactionId("pay_Benchmark0001")
+				.userName("Benchmark User")
+				.userEmail("benchmark@example.com")
+				.amount(1499.0)
+				.currency("INR")
+				.paymentStatus("CAPTURED")
+				.paymentDate("2025-01-01T10:00:00")
+				.description("Benchmark receipt")
+				.build();
+
+		for (int i = 0; i < WARMUP; i++) {
+			pdfService.generatePaymentPdf(receipt);
+		}
+
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+		long bytesBefore = threads.getThreadAllocatedBytes(threadId);
+		long start = System.nanoTime();
+		int size = 0;
+		for (int i = 0; i < ITERATIONS; i++) {
+			size = pdfService.generatePaymentPdf(receipt).length;
+		}
+		long elapsedNanos = System.nanoTime() - start;
+		long allocated = threads.getThreadAllocatedBytes(threadId) - bytesBefore;
+
+		System.out.printf("PdfService: %.3f ms/pdf, %d KB allocated/pdf, %d bytes output%n",
+				elapsedNanos / 1_000_000.0 / ITERATIONS, allocated / ITERATIONS / 1024, size);
+		assertTrue(size > 0);
+	}
+}
@@ -0,0 +1,92 @@
+package com.saasapp.dynamic_app.service;
+
+import com.saasapp.dynamic_app.dto.PaymentReconciliationRow;
+import com.saasapp.dynamic_app.entity.PaymentEntity.PaymentStatus;
+import com.saasapp.dynamic_app.service.PaymentSettlementSource.GatewayPayment;
+import com.saasapp.dynamic_app.service.ReconciliationPlanner.Correction;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReconciliationPlannerTest {
+
+	private static final Instant FROM = Instant.parse("2025-01-01T00:00:00Z");
+	private static final Instant TO = Instant.parse("2025-01-01T01:00:00Z");
+
+	@Test
+	void collectsAllPagesAndKeepsMostAdvancedAttemptPerOrder() {
+		List<GatewayPayment> listing = new ArrayList<>();
+		for (int i = 0; i < 250; i++) {
+			listing.add(new GatewayPayment("pay_" + i, "order_" + i, "captured", "upi", null));
+		}
+		listing.add(new GatewayPayment("pay_retry", "order_0", "failed", "card", "declined"));
+		StubSettlementSource source = new StubSettlementSource(listing);
+
+		Map<String, GatewayPayment> byOrder = ReconciliationPlanner.collectGatewayPayments(source, FROM, TO, 100);
+
+		assertEquals(250, byOrder.size());
+		assertEquals("pay_0", byOrder.get("order_0").paymentId());
+		assertEquals(3, source.calls);
+	}
+
+	@Test
+	void plansOnlyTransitionsTheStateMachineAllows() {
+		Map<String, GatewayPayment> gateway = Map.of(
+				"order_pending", new GatewayPayment("pay_1", "order_pending", "captured", "upi", null),
+				"order_failed", new GatewayPayment("pay_2", "order_failed", "failed", "card", "declined"),
+				"order_refunded", new GatewayPayment("pay_3", "order_refunded", "refunded", "card", null),
+				"order_created", new GatewayPayment("pay_4", "order_created", "created", null, null));
+		List<Row> rows = List.of(
+				new Row(1L, "order_pending", PaymentStatus.PENDING),
+				new Row(2L, "order_failed", PaymentStatus.FAILED),
+				new Row(3L, "order_refunded", PaymentStatus.AUTHORIZED),
+				new Row(4L, "order_created", PaymentStatus.PENDING),
+				new Row(5L, "order_missing", PaymentStatus.PENDING));
+
+		List<Correction> corrections = ReconciliationPlanner.plan(rows, gateway);
+
+		assertEquals(List.of(
+				new Correction("order_pending", "pay_1", PaymentStatus.CAPTURED, "upi", null),
+				new Correction("order_refunded", "pay_3", PaymentStatus.CAPTURED, "card", null),
+				new Correction("order_refunded", "pay_3", PaymentStatus.REFUNDED, "card", null)), corrections);
+		assertTrue(corrections.stream().noneMatch(c -> c.orderId().equals("order_missing")));
+	}
+
+	private static final class StubSettlementSource implements PaymentSettlementSource {
+		private final List<GatewayPayment> payments;
+		private int calls;
+
+		StubSettlementSource(List<GatewayPayment> payments) {
+			this.payments = payments;
+		}
+
+		@Override
+		public List<GatewayPayment> listPayments(Instant from, Instant to, int count, int skip) {
+			calls++;
+			return payments.subList(Math.min(skip, payments.size()), Math.min(skip + count, payments.size()));
+		}
+	}
+
+	private record Row(Long id, String orderId, PaymentStatus status) implements PaymentReconciliationRow {
+		@Override
+		public Long getId() {
+			return id;
+		}
+
+		@Override
+		public String getRazorpayOrderId() {
+			return orderId;
+		}
+
+		@Override
+		public PaymentStatus getStatus() {
+			return status;
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package com.saasapp.dynamic_app.service;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import jakarta.mail.Message;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SmtpConnectionPoolTest {
+
+	@RegisterExtension
+	static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+	private final JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+
+	private SmtpConnectionPool pool;
+
+	@AfterEach
+	void closePool() {
+		if (pool != null) {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	void reusesConnectionAcrossSends() throws Exception {
+		pool = pool(100, 60_000);
+
+		for (int i = 0; i < 3; i++) {
+			pool.send(message("reuse " + i));
+		}
+
+		Map<String, Object> stats = pool.getStats();
+		assertEquals(1L, stats.get("connectionsOpened"));
+		assertEquals(3L, stats.get("messagesSent"));
+		assertEquals(3, greenMail.getReceivedMessages().length);
+	}
+
+	@Test
+	void revalidatesIdleConnectionWithNoop() throws Exception {
+		pool = pool(100, 0);
+
+		pool.send(message("first"));
+		Thread.sleep(20);
+		pool.send(message("after idle"));
+		assertEquals(1L, pool.getStats().get("connectionsOpened"));
+		assertEquals(0L, pool.getStats().get("failedValidations"));
+
+		// Restarting the server drops the pooled connection; the NOOP catches it before the send
+		greenMail.reset();
+		Thread.sleep(20);
+		pool.send(message("after restart"));
+
+		Map<String, Object> stats = pool.getStats();
+		assertEquals(1L, stats.get("failedValidations"));
+		assertEquals(2L, stats.get("connectionsOpened"));
+		assertEquals(1, greenMail.getReceivedMessages().length);
+	}
+
+	@Test
+	void discardsDroppedConnectionAndRetriesOnce() throws Exception {
+		// Never NOOP, so the dead connection is only found by the send itself
+		pool = pool(100, 60_000);
+
+		pool.send(message("first"));
+		greenMail.reset();
+		pool.send(message("after restart"));
+
+		Map<String, Object> stats = pool.getStats();
+		assertEquals(2L, stats.get("connectionsOpened"));
+		assertEquals(1L, stats.get("connectionsClosed"));
+		assertEquals(2L, stats.get("messagesSent"));
+		assertEquals(1, greenMail.getReceivedMessages().length);
+	}
+
+	@Test
+	void recyclesConnectionAtMessageLimit() throws Exception {
+		pool = pool(2, 60_000);
+
+		for (int i = 0; i < 5; i++) {
+			pool.send(message("recycle " + i));
+		}
+
+		Map<String, Object> stats = pool.getStats();
+		assertEquals(3L, stats.get("connectionsOpened"));
+		assertEquals(2L, stats.get("connectionsClosed"));
+		assertEquals(1, stats.get("idleConnections"));
+		assertEquals(5, greenMail.getReceivedMessages().length);
+	}
+
+	private SmtpConnectionPool pool(int maxMessagesPerConnection, long validateAfterIdleMs) {
+		mailSender.setHost(ServerSetupTest.SMTP.getBindAddress());
+		mailSender.setPort(ServerSetupTest.SMTP.getPort());
+
+		SmtpConnectionPool smtpConnectionPool = new SmtpConnectionPool();
+		ReflectionTestUtils.setField(smtpConnectionPool, "mailSender", mailSender);
+		ReflectionTestUtils.setField(smtpConnectionPool, "enabled", true);
+		ReflectionTestUtils.setField(smtpConnectionPool, "maxConnections", 2);
+		ReflectionTestUtils.setField(smtpConnectionPool, "maxMessagesPerConnection", maxMessagesPerConnection);
+		ReflectionTestUtils.setField(smtpConnectionPool, "maxAgeMs", 600_000L);
+		ReflectionTestUtils.setField(smtpConnectionPool, "maxIdleMs", 600_000L);
+		ReflectionTestUtils.setField(smtpConnectionPool, "validateAfterIdleMs", validateAfterIdleMs);
+		ReflectionTestUtils.setField(smtpConnectionPool, "borrowTimeoutMs", 5_000L);
+		smtpConnectionPool.init();
+		return smtpConnectionPool;
+	}
+
+	private MimeMessage message(String subject) throws Exception {
+		MimeMessage message = mailSender.createMimeMessage();
+		message.setFrom(new InternetAddress("noreply@dynamicapp.com"));
+		message.setRecipient(Message.RecipientType.TO, new InternetAddress("customer@example.com"));
+		message.setSubject(subject);
+		message.setText("Pooled SMTP test message");
+		return message;
+	}
+}